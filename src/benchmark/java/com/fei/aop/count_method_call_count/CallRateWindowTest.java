@@ -0,0 +1,43 @@
+// CallRateWindowTest.java
+package com.fei.aop.count_method_call_count;
+
+/**
+ * CallRateWindow 的验证：同一秒里 tick 多次（抖动、fixedRate 补跑错过的执行）时，前一次的调用数不能丢
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.main=com.fei.aop.count_method_call_count.CallRateWindowTest
+ * </pre>
+ * 有违反时以非 0 状态退出
+ */
+public class CallRateWindowTest {
+
+    private static boolean ok = true;
+
+    public static void main(String[] args) {
+        long second = 1_700_000_000L;
+
+        CallRateWindow window = new CallRateWindow();
+        window.tick(second, 10);
+        window.tick(second, 25);
+        check("同一秒 tick 两次", window.ratePerSecond(1, second), 25);
+
+        // 补跑：上一秒漏掉的 tick 和这一秒的 tick 落在同一秒，再加上下一秒正常的 tick
+        window.tick(second + 1, 40);
+        window.tick(second + 1, 40);
+        window.tick(second + 1, 55);
+        window.tick(second + 2, 60);
+        check("补跑后 3 秒窗口", window.ratePerSecond(3, second + 2), 60 / 3.0);
+
+        // 环形窗口转了一圈回到同一个桶，旧的那一秒不能累加进来
+        window.tick(second + CallRateWindow.WINDOW_SECONDS, 67);
+        check("转一圈后同一个桶", window.ratePerSecond(1, second + CallRateWindow.WINDOW_SECONDS), 7);
+
+        System.out.println(ok ? "OK" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static void check(String name, double actual, double expected) {
+        boolean passed = Math.abs(actual - expected) < 1e-9;
+        System.out.println((passed ? "通过 " : "失败 ") + name + "：期望 " + expected + "，实际 " + actual);
+        ok &= passed;
+    }
+}
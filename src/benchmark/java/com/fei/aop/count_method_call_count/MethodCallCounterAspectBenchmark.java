@@ -0,0 +1,81 @@
+package com.fei.aop.count_method_call_count;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @MethodCallCount 切面的开销：同一个 DemoService.sayHello，直接调用和经过切面代理调用的耗时对比
+ * <p>
+ * direct / event 两种计数方式各跑一遍；多线程下的争用加 -t 看：
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec -Djmh.args="MethodCallCounterAspectBenchmark"
+ * mvn -Pbenchmark compile exec:exec -Djmh.args="MethodCallCounterAspectBenchmark -t 4 -prof gc"
+ * </pre>
+ * counted 减去 plain 就是每次调用切面（取 id、两次 nanoTime、写直方图和计数）的开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodCallCounterAspectBenchmark {
+
+    @Param({"direct", "event"})
+    public String mode;
+
+    private AnnotationConfigApplicationContext context;
+    private DemoService plain;
+    private DemoService counted;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Collections.singletonMap("method-call-count.mode", mode)));
+        context.register(AspectConfig.class, MethodCallCounterService.class, MethodCallCounterRegistrar.class,
+                MethodCallCounterAspect.class, DemoService.class);
+        context.refresh();
+        counted = context.getBean(DemoService.class);
+        plain = new DemoService();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String plain() {
+        return plain.sayHello("benchmark");
+    }
+
+    @Benchmark
+    public String counted() {
+        return counted.sayHello("benchmark");
+    }
+
+    /**
+     * 故意不加 @Configuration，原因见 TransferBenchmarkConfig
+     */
+    @EnableAspectJAutoProxy
+    static class AspectConfig {
+    }
+}
@@ -0,0 +1,86 @@
+// OpenMetricsScrapeBenchmark.java
+package com.fei.aop.count_method_call_count;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /metrics 抓取一次的耗时随方法数量的变化
+ * <p>
+ * 想看每次抓取分配了多少字节，加上 GC profiler：
+ * mvn -Pbenchmark compile exec:exec -Djmh.args="OpenMetricsScrapeBenchmark -prof gc"
+ * 关注 gc.alloc.rate.norm，它应该基本不随 methodCount 增长。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenMetricsScrapeBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int methodCount;
+
+    private OpenMetricsExporter exporter;
+    private List<MethodCallMetrics> metrics;
+    private CountingOutputStream out;
+
+    @Setup
+    public void setUp() {
+        exporter = new OpenMetricsExporter(new MethodCallCounterService(), Collections.emptyList());
+        metrics = new ArrayList<>(methodCount);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < methodCount; i++) {
+            String name = "com.example.Service" + (i / 20) + "#method" + i + "(String)";
+            MethodCallMetrics m = new MethodCallMetrics(i, () -> name);
+            for (int j = 0; j < 1000; j++) {
+                m.recordCall();
+                m.recordLatency(random.nextLong(10_000, 50_000_000));
+            }
+            metrics.add(m);
+        }
+        out = new CountingOutputStream();
+    }
+
+    @Benchmark
+    public long scrape() throws IOException {
+        out.count = 0;
+        exporter.writeTo(out, metrics);
+        return out.count;
+    }
+
+    /**
+     * 只记字节数的输出流，模拟 Tomcat 的响应流而不引入网络开销
+     */
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
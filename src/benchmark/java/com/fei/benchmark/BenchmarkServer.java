@@ -0,0 +1,47 @@
+package com.fei.benchmark;
+
+import com.fei.MainApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.web.context.support.StandardServletEnvironment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 不依赖本地 MySQL 启动整个应用：数据源换成内嵌 H2（MySQL 兼容模式），
+ * 表结构和初始数据照常由 application.yml 里配置的 schema.sql / data.sql 初始化
+ * <p>
+ * 给 HttpLoadTest、LoadTestSuite、ChatStreamLoadTest 当压测对象：
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.main=com.fei.benchmark.BenchmarkServer
+ * </pre>
+ * 命令行参数照常传给 Spring Boot，可以覆盖这里的默认值，比如 --account.group-commit.enabled=true。
+ */
+public class BenchmarkServer {
+
+    public static void main(String[] args) {
+        // 不能用 setDefaultProperties：默认属性的优先级比 application.yml 低，会被 MySQL 的配置盖掉。
+        // 放进环境里最前面，命令行参数之后会加在它前面，仍然可以覆盖
+        StandardServletEnvironment environment = new StandardServletEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("embeddedDatabase", embeddedDatabaseProperties()));
+        SpringApplication application = new SpringApplication(MainApplication.class);
+        application.setEnvironment(environment);
+        application.run(args);
+    }
+
+    static Map<String, Object> embeddedDatabaseProperties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=1000");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.datasource.platform", "h2");
+        properties.put("spring.datasource.initialization-mode", "always");
+        // application.yml 里是 MySQL 专用的流式取数写法，H2 不接受负数
+        properties.put("account.export.fetch-size", 1000);
+        // H2 2.x 支持 SKIP LOCKED，和 MySQL 8.0 上一样带着 outbox 压测
+        properties.put("account.outbox.enabled", true);
+        return properties;
+    }
+}
@@ -0,0 +1,290 @@
+package com.fei.benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 闭环 HTTP 压测：N 个并发客户端，每个客户端在一条 keep-alive 连接上收到响应后立刻发下一个请求，
+ * 统计吞吐量和延迟分布
+ * <p>
+ * 客户端只用一个线程（NIO Selector），一万个并发客户端也只是一万个 socket，压测端本身不会先成为瓶颈。
+ * <p>
+ * 用法（先启动服务端，平台线程 / 虚拟线程各跑一遍对比；本地没有 MySQL 时用 BenchmarkServer 启动）：
+ * <pre>
+ * mvn -Pbenchmark compile
+ * java -cp target/classes com.fei.benchmark.HttpLoadTest /work 1000 30
+ * java -cp target/classes com.fei.benchmark.HttpLoadTest /work 10000 30
+ * </pre>
+ * 参数：path clients seconds [method] [host] [port]
+ */
+public class HttpLoadTest {
+
+    public static void main(String[] args) throws IOException {
+        String path = args.length > 0 ? args[0] : "/work";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        String method = args.length > 3 ? args[3] : "GET";
+        String host = args.length > 4 ? args[4] : "localhost";
+        int port = args.length > 5 ? Integer.parseInt(args[5]) : 8888;
+
+        byte[] request = request(method, path, host, port);
+        Result result = run(host, port, request, clients, TimeUnit.SECONDS.toNanos(seconds));
+        print(method + " " + path, clients, seconds, result);
+    }
+
+    static void print(String request, int clients, int seconds, Result result) {
+        System.out.println("request                  : " + request);
+        System.out.println("clients                  : " + clients + " (connect/io errors " + result.errors + ")");
+        System.out.println("duration                 : " + seconds + " s");
+        System.out.println("completed requests       : " + result.count + " (non-2xx " + result.non2xx + ")");
+        System.out.println("throughput               : " + String.format("%.1f", result.throughput(seconds)) + " req/s");
+        if (result.count > 0) {
+            long[] sorted = result.sortedLatencyMicros();
+            System.out.println("latency p50 / p99 / max  : " + millis(percentile(sorted, 50)) + " / "
+                    + millis(percentile(sorted, 99)) + " / " + millis(sorted[sorted.length - 1]) + " ms");
+        }
+    }
+
+    /**
+     * 拼一个不带请求体的请求
+     */
+    static byte[] request(String method, String path, String host, int port) {
+        return (method + " " + path + " HTTP/1.1\r\nHost: " + host + ":" + port
+                + "\r\nContent-Length: 0\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static Result run(String host, int port, byte[] request, int clients, long durationNanos) throws IOException {
+        return run(host, port, new byte[][]{request}, clients, durationNanos);
+    }
+
+    /**
+     * @param requests 第 i 个客户端一直发 requests[i % requests.length]，比如一半客户端 Alice -> Bob、一半 Bob -> Alice
+     */
+    static Result run(String host, int port, byte[][] requests, int clients, long durationNanos) throws IOException {
+        Result result = new Result();
+        ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+        long deadline = System.nanoTime() + durationNanos;
+        int open = 0;
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < clients; i++) {
+                connect(selector, host, port, new Client(requests[i % requests.length]));
+                open++;
+            }
+            while (open > 0) {
+                selector.select(200);
+                boolean expired = System.nanoTime() >= deadline;
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Client client = (Client) key.attachment();
+                    SocketChannel channel = (SocketChannel) key.channel();
+                    try {
+                        if (key.isConnectable()) {
+                            channel.finishConnect();
+                            client.send(key);
+                        } else if (key.isWritable()) {
+                            channel.write(client.request);
+                            if (!client.request.hasRemaining()) {
+                                key.interestOps(SelectionKey.OP_READ);
+                            }
+                        } else if (key.isReadable()) {
+                            readBuffer.clear();
+                            int n = channel.read(readBuffer);
+                            if (n < 0) {
+                                throw new IOException("connection closed by server");
+                            }
+                            readBuffer.flip();
+                            if (client.consume(readBuffer)) {
+                                result.record(System.nanoTime() - client.sentNanos, client.status);
+                                if (expired) {
+                                    open--;
+                                    key.cancel();
+                                    channel.close();
+                                } else if (client.closeRequested) {
+                                    key.cancel();
+                                    channel.close();
+                                    connect(selector, host, port, client);
+                                } else {
+                                    client.send(key);
+                                }
+                            }
+                        }
+                    } catch (IOException ex) {
+                        result.errors++;
+                        open--;
+                        key.cancel();
+                        channel.close();
+                    }
+                }
+                if (expired && System.nanoTime() - deadline > TimeUnit.SECONDS.toNanos(30)) {
+                    // 服务端迟迟不回的请求不再等了
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void connect(Selector selector, String host, int port, Client client) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(new InetSocketAddress(host, port));
+        channel.register(selector, SelectionKey.OP_CONNECT, client);
+    }
+
+    static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    static String millis(long micros) {
+        return String.format("%.1f", micros / 1000.0);
+    }
+
+    static final class Result {
+        long[] latencyMicros = new long[1 << 16];
+        int count;
+        int non2xx;
+        int errors;
+
+        void record(long nanos, int status) {
+            if (count == latencyMicros.length) {
+                latencyMicros = Arrays.copyOf(latencyMicros, count * 2);
+            }
+            latencyMicros[count++] = TimeUnit.NANOSECONDS.toMicros(nanos);
+            if (status < 200 || status >= 300) {
+                non2xx++;
+            }
+        }
+
+        double throughput(int seconds) {
+            return count / (double) seconds;
+        }
+
+        long[] sortedLatencyMicros() {
+            long[] sorted = Arrays.copyOf(latencyMicros, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * 一个客户端 = 一条 keep-alive 连接；只解析判断响应结束需要的部分（状态码、Content-Length、chunked 结尾）
+     */
+    private static final class Client {
+        private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+        private static final byte[] CHUNKED_END = {'0', '\r', '\n', '\r', '\n'};
+
+        final ByteBuffer request;
+        final StringBuilder header = new StringBuilder();
+        long sentNanos;
+        int status;
+        boolean inBody;
+        boolean chunked;
+        // 服务端要求关闭连接（Tomcat 默认一条连接处理 100 个请求后就会这样），下一个请求得换新连接
+        boolean closeRequested;
+        long bodyRemaining;
+        // 最近读到的几个字节，用来判断 header 结束和 chunked 结束
+        int tail;
+        final byte[] recent = new byte[5];
+
+        Client(byte[] request) {
+            this.request = ByteBuffer.wrap(request);
+        }
+
+        void send(SelectionKey key) throws IOException {
+            request.rewind();
+            header.setLength(0);
+            inBody = false;
+            chunked = false;
+            closeRequested = false;
+            bodyRemaining = 0;
+            tail = 0;
+            Arrays.fill(recent, (byte) 0);
+            sentNanos = System.nanoTime();
+            ((SocketChannel) key.channel()).write(request);
+            key.interestOps(request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        /**
+         * @return 一个完整的响应是否已经读完
+         */
+        boolean consume(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                if (!inBody) {
+                    byte b = buffer.get();
+                    header.append((char) b);
+                    remember(b);
+                    if (endsWith(HEADER_END)) {
+                        parseHeader();
+                        inBody = true;
+                        tail = 0;
+                        Arrays.fill(recent, (byte) 0);
+                        if (!chunked && bodyRemaining == 0) {
+                            return true;
+                        }
+                    }
+                } else if (chunked) {
+                    remember(buffer.get());
+                    if (endsWith(CHUNKED_END)) {
+                        return true;
+                    }
+                } else {
+                    int skip = (int) Math.min(bodyRemaining, buffer.remaining());
+                    buffer.position(buffer.position() + skip);
+                    bodyRemaining -= skip;
+                    if (bodyRemaining == 0) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void parseHeader() {
+            String text = header.toString();
+            status = Integer.parseInt(text.substring(9, 12));
+            for (String line : text.split("\r\n")) {
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String name = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("Content-Length")) {
+                    bodyRemaining = Long.parseLong(value);
+                } else if (name.equalsIgnoreCase("Transfer-Encoding") && value.equalsIgnoreCase("chunked")) {
+                    chunked = true;
+                } else if (name.equalsIgnoreCase("Connection") && value.equalsIgnoreCase("close")) {
+                    closeRequested = true;
+                }
+            }
+        }
+
+        private void remember(byte b) {
+            recent[tail % recent.length] = b;
+            tail++;
+        }
+
+        private boolean endsWith(byte[] suffix) {
+            if (tail < suffix.length) {
+                return false;
+            }
+            for (int i = 0; i < suffix.length; i++) {
+                if (recent[(tail - suffix.length + i) % recent.length] != suffix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
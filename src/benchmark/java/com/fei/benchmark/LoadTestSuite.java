@@ -0,0 +1,73 @@
+package com.fei.benchmark;
+
+import com.fei.controller.stream.ChatStreamLoadTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次压完几个主要接口，最后打印一张汇总表，方便前后两个版本对比有没有退化
+ * <p>
+ * 1. GET /account/transfer：一半客户端 Alice -> Bob、一半 Bob -> Alice，金额相同，余额来回摆动不会透支
+ * 2. GET /stats：方法调用统计
+ * 3. GET /chat1：SSE 长连接，交给 ChatStreamLoadTest，看首包延迟、并发流数量和服务端线程数
+ * <p>
+ * 用法（本地没有 MySQL 时先用 BenchmarkServer 启动服务端）：
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.main=com.fei.benchmark.BenchmarkServer
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.main=com.fei.benchmark.LoadTestSuite -Dbenchmark.args="64 20 500"
+ * </pre>
+ * 参数：clients seconds chat1Connections [host] [port]；chat1Connections 为 0 时跳过 /chat1
+ */
+public class LoadTestSuite {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int chatConnections = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        String host = args.length > 3 ? args[3] : "localhost";
+        int port = args.length > 4 ? Integer.parseInt(args[4]) : 8888;
+
+        List<String> names = new ArrayList<>();
+        List<HttpLoadTest.Result> results = new ArrayList<>();
+
+        byte[][] transfers = {
+                HttpLoadTest.request("GET", "/account/transfer?from=Alice&to=Bob&amount=1", host, port),
+                HttpLoadTest.request("GET", "/account/transfer?from=Bob&to=Alice&amount=1", host, port)
+        };
+        run("GET /account/transfer", transfers, host, port, clients, seconds, names, results);
+        run("GET /stats", new byte[][]{HttpLoadTest.request("GET", "/stats", host, port)},
+                host, port, clients, seconds, names, results);
+
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-24s %10s %9s %9s %9s %8s %7s",
+                "endpoint", "req/s", "p50 ms", "p99 ms", "max ms", "non-2xx", "errors"));
+        for (int i = 0; i < names.size(); i++) {
+            HttpLoadTest.Result result = results.get(i);
+            long[] sorted = result.sortedLatencyMicros();
+            boolean any = sorted.length > 0;
+            System.out.println(String.format(Locale.ROOT, "%-24s %10.1f %9s %9s %9s %8d %7d",
+                    names.get(i), result.throughput(seconds),
+                    any ? HttpLoadTest.millis(HttpLoadTest.percentile(sorted, 50)) : "-",
+                    any ? HttpLoadTest.millis(HttpLoadTest.percentile(sorted, 99)) : "-",
+                    any ? HttpLoadTest.millis(sorted[sorted.length - 1]) : "-",
+                    result.non2xx, result.errors));
+        }
+
+        if (chatConnections > 0) {
+            System.out.println();
+            ChatStreamLoadTest.main(new String[]{"/chat1", String.valueOf(chatConnections), host, String.valueOf(port)});
+        }
+    }
+
+    private static void run(String name, byte[][] requests, String host, int port, int clients, int seconds,
+                            List<String> names, List<HttpLoadTest.Result> results) throws Exception {
+        HttpLoadTest.Result result = HttpLoadTest.run(host, port, requests, clients, TimeUnit.SECONDS.toNanos(seconds));
+        HttpLoadTest.print(name, clients, seconds, result);
+        System.out.println();
+        names.add(name);
+        results.add(result);
+    }
+}
@@ -0,0 +1,223 @@
+package com.fei.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * 启动耗时对比：默认构建 vs fast-startup（组件索引 + AppCDS 归档）
+ * <p>
+ * 每次启动一个新的 JVM 跑 BenchmarkServer（内嵌 H2），从启动进程开始计时，直到 GET /ready 返回 200
+ * （Spring Boot 启动完成并且关键预热任务结束），记录就绪耗时、应用自己统计的启动耗时（/startup/profile）和此时的 RSS，然后杀掉进程。
+ * 两种配置交替执行，先各跑一轮不计入结果（让操作系统把 jar 读进页缓存）。
+ * <ul>
+ * <li>default：-Dspring.index.ignore=true，忽略组件索引照常扫描类路径；JDK 自带的 CDS（只有 JDK 的类）照常生效</li>
+ * <li>fast：读组件索引，-XX:SharedArchiveFile 加载训练运行生成的动态归档，-Xshare:on 保证归档真的被用上，用不上直接启动失败</li>
+ * </ul>
+ * 用法（需要 JDK 13+ 运行子进程，驱动程序本身 JDK 8 也可以）：
+ * <pre>
+ * mvn -Pbenchmark,fast-startup package -Dfast-startup.skip-training=true exec:exec -Dbenchmark.main=com.fei.benchmark.StartupBenchmark -Dbenchmark.args="10 /path/to/jdk17/bin/java"
+ * </pre>
+ * 参数：runs [java] [port]
+ */
+public class StartupBenchmark {
+
+    private static final String SERVER_MAIN = "com.fei.benchmark.BenchmarkServer";
+    private static final long READY_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(3);
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        String java = args.length > 1 ? args[1] : Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 8895;
+
+        Path jar = findApplicationJar(Paths.get("target"));
+        Path workDir = Paths.get("target", "startup-benchmark");
+        Files.createDirectories(workDir);
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            if (jarFile.getEntry("META-INF/spring.components") == null) {
+                System.out.println("警告：" + jar + " 里没有组件索引，打包时没有开启 fast-startup profile，两种配置只差 AppCDS");
+            }
+        }
+
+        Path archive = workDir.resolve("app-cds.jsa").toAbsolutePath();
+        Files.deleteIfExists(archive);
+        System.out.println("训练运行，生成 " + archive + " ...");
+        List<String> training = command(java, jar, port, "-XX:ArchiveClassesAtExit=" + archive);
+        training.add("--startup.exit-after-start=true");
+        Process process = start(training, workDir.resolve("training.log"));
+        if (!process.waitFor(5, TimeUnit.MINUTES) || !Files.exists(archive)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("训练运行没有生成归档，见 " + workDir.resolve("training.log"));
+        }
+        System.out.printf(Locale.ROOT, "归档大小 %.1f MB%n", Files.size(archive) / 1048576.0);
+
+        String[][] configs = {
+                {"default", "-Dspring.index.ignore=true"},
+                {"fast", "-XX:SharedArchiveFile=" + archive, "-Xshare:on"}
+        };
+        List<List<Sample>> samples = new ArrayList<>();
+        for (int c = 0; c < configs.length; c++) {
+            samples.add(new ArrayList<>());
+        }
+        for (int run = -1; run < runs; run++) {
+            for (int c = 0; c < configs.length; c++) {
+                String name = configs[c][0];
+                List<String> cmd = command(java, jar, port, Arrays.copyOfRange(configs[c], 1, configs[c].length));
+                Sample sample = measure(cmd, workDir.resolve(name + "-" + (run + 1) + ".log"), port);
+                System.out.printf(Locale.ROOT, "%-8s #%-3s 就绪 %7.0f ms  应用启动 %7.0f ms  RSS %6.1f MB%n",
+                        name, run < 0 ? "-" : String.valueOf(run + 1), sample.readyMillis, sample.startupMillis, sample.rssMegabytes);
+                if (run >= 0) {
+                    samples.get(c).add(sample);
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-8s %5s %12s %12s %12s %14s %10s",
+                "config", "runs", "ready p50", "ready min", "ready max", "startup p50", "RSS p50"));
+        for (int c = 0; c < configs.length; c++) {
+            List<Sample> list = samples.get(c);
+            double[] ready = list.stream().mapToDouble(s -> s.readyMillis).sorted().toArray();
+            double[] startup = list.stream().mapToDouble(s -> s.startupMillis).sorted().toArray();
+            double[] rss = list.stream().mapToDouble(s -> s.rssMegabytes).sorted().toArray();
+            System.out.println(String.format(Locale.ROOT, "%-8s %5d %9.0f ms %9.0f ms %9.0f ms %11.0f ms %7.1f MB",
+                    configs[c][0], list.size(), median(ready), ready[0], ready[ready.length - 1], median(startup), median(rss)));
+        }
+    }
+
+    private static List<String> command(String java, Path jar, int port, String... jvmOptions) {
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        Collections.addAll(command, jvmOptions);
+        command.add("-cp");
+        command.add(jar.toAbsolutePath().toString());
+        command.add(SERVER_MAIN);
+        command.add("--server.port=" + port);
+        // 不写启动报告文件，只通过 /startup/profile 读
+        command.add("--startup.profiler.report-file=");
+        return command;
+    }
+
+    private static Process start(List<String> command, Path log) throws IOException {
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+    }
+
+    private static Sample measure(List<String> command, Path log, int port) throws Exception {
+        long start = System.nanoTime();
+        Process process = start(command, log);
+        try {
+            while (status(port, "/ready") != 200) {
+                if (!process.isAlive() || System.nanoTime() - start > READY_TIMEOUT_NANOS) {
+                    throw new IllegalStateException("服务没有就绪，见 " + log);
+                }
+                Thread.sleep(5);
+            }
+            double readyMillis = (System.nanoTime() - start) / 1e6;
+            double rss = rssMegabytes(pid(process));
+            JsonNode profile = new ObjectMapper().readTree(new URL("http://localhost:" + port + "/startup/profile"));
+            return new Sample(readyMillis, profile.path("totalMillis").asDouble(), rss);
+        } finally {
+            process.destroyForcibly();
+            process.waitFor();
+        }
+    }
+
+    private static int status(int port, String path) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+            connection.setConnectTimeout(200);
+            connection.setReadTimeout(1000);
+            int status = connection.getResponseCode();
+            // 读完再关，连接才能被 keep-alive 复用；错误响应可能没有响应体
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                try {
+                    byte[] buffer = new byte[1024];
+                    while (body.read(buffer) >= 0) {
+                        // 丢弃
+                    }
+                } finally {
+                    body.close();
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Process.pid() 是 JDK 9 才有的，JDK 8 上从 UNIXProcess 的 pid 字段取
+     */
+    private static long pid(Process process) {
+        try {
+            return (Long) Process.class.getMethod("pid").invoke(process);
+        } catch (ReflectiveOperationException e) {
+            try {
+                Field field = process.getClass().getDeclaredField("pid");
+                field.setAccessible(true);
+                return field.getInt(process);
+            } catch (ReflectiveOperationException ignored) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 读 /proc/[pid]/status 的 VmRSS，不是 Linux 时返回 -1
+     */
+    private static double rssMegabytes(long pid) throws IOException {
+        Path status = Paths.get("/proc", String.valueOf(pid), "status");
+        if (pid < 0 || !Files.exists(status)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024.0;
+            }
+        }
+        return -1;
+    }
+
+    private static Path findApplicationJar(Path target) throws IOException {
+        try (Stream<Path> files = Files.list(target)) {
+            return files.filter(p -> p.toString().endsWith(".jar") && !p.toString().endsWith("-exec.jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("target 下没有 jar，先执行 mvn -Pbenchmark,fast-startup package"));
+        }
+    }
+
+    private static double median(double[] sorted) {
+        int n = sorted.length;
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+    }
+
+    private static final class Sample {
+        final double readyMillis;
+        final double startupMillis;
+        final double rssMegabytes;
+
+        Sample(double readyMillis, double startupMillis, double rssMegabytes) {
+            this.readyMillis = readyMillis;
+            this.startupMillis = startupMillis;
+            this.rssMegabytes = rssMegabytes;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.fei.controller.stream;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /chat 与 /chat/blocking 的并发连接压测
+ * <p>
+ * 客户端本身只用一个线程（NIO Selector）同时打开所有连接，统计：
+ * 1. 同一时刻正在接收数据的连接数峰值
+ * 2. 压测期间服务端 JVM 线程数的峰值（轮询 /metrics 里的 jvm_threads_live），算出每个线程承载了多少个连接
+ * 3. 每个连接从建立到结束的耗时分布
+ * <p>
+ * 用法：
+ * <pre>
+ * mvn -Pbenchmark compile
+ * java -cp target/classes com.fei.controller.stream.ChatStreamLoadTest /chat/blocking 200
+ * java -cp target/classes com.fei.controller.stream.ChatStreamLoadTest /chat 200
+ * </pre>
+ * 阻塞版本每个连接都要占一个线程（StreamingResponseBody 在 MvcAsync 线程上 sleep），服务端线程数跟着连接数涨；
+ * 非阻塞版本线程数基本不变。
+ */
+public class ChatStreamLoadTest {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String path = args.length > 0 ? args[0] : "/chat";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        String host = args.length > 2 ? args[2] : "localhost";
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 8888;
+
+        ServerThreadSampler sampler = new ServerThreadSampler(new URL("http", host, port, "/metrics"));
+        int baselineThreads = sampler.sample();
+        sampler.start();
+
+        byte[] request = ("GET " + path + " HTTP/1.1\r\nHost: " + host + ":" + port
+                + "\r\nAccept: text/event-stream\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer readBuffer = ByteBuffer.allocate(16 * 1024);
+        List<Connection> all = new ArrayList<>(connections);
+        int open = 0;
+        int streaming = 0;
+        int maxStreaming = 0;
+        long startNanos = System.nanoTime();
+
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < connections; i++) {
+                Connection connection = new Connection(request);
+                connection.channel = SocketChannel.open();
+                connection.channel.configureBlocking(false);
+                connection.channel.connect(new InetSocketAddress(host, port));
+                connection.channel.register(selector, SelectionKey.OP_CONNECT, connection);
+                all.add(connection);
+                open++;
+            }
+            while (open > 0) {
+                selector.select(1000);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isConnectable()) {
+                            connection.channel.finishConnect();
+                            key.interestOps(SelectionKey.OP_WRITE);
+                        } else if (key.isWritable()) {
+                            connection.channel.write(connection.request);
+                            if (!connection.request.hasRemaining()) {
+                                key.interestOps(SelectionKey.OP_READ);
+                            }
+                        } else if (key.isReadable()) {
+                            readBuffer.clear();
+                            int n = connection.channel.read(readBuffer);
+                            if (n > 0 && connection.firstByteNanos == 0) {
+                                connection.firstByteNanos = System.nanoTime();
+                                streaming++;
+                                maxStreaming = Math.max(maxStreaming, streaming);
+                            }
+                            if (n < 0) {
+                                connection.endNanos = System.nanoTime();
+                                streaming--;
+                                open--;
+                                key.cancel();
+                                connection.channel.close();
+                            }
+                        }
+                    } catch (IOException ex) {
+                        connection.failed = true;
+                        if (connection.firstByteNanos != 0) {
+                            streaming--;
+                        }
+                        open--;
+                        key.cancel();
+                        connection.channel.close();
+                    }
+                }
+            }
+        }
+
+        sampler.finish();
+        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        int extraThreads = Math.max(1, sampler.peak - baselineThreads);
+        long[] durations = all.stream()
+                .filter(c -> !c.failed)
+                .mapToLong(c -> TimeUnit.NANOSECONDS.toMillis(c.endNanos - startNanos))
+                .sorted()
+                .toArray();
+        long[] firstBytes = all.stream()
+                .filter(c -> c.firstByteNanos != 0)
+                .mapToLong(c -> TimeUnit.NANOSECONDS.toMillis(c.firstByteNanos - startNanos))
+                .sorted()
+                .toArray();
+        long failed = all.stream().filter(c -> c.failed).count();
+
+        System.out.println("path                         : " + path);
+        System.out.println("connections                  : " + connections + " (failed " + failed + ")");
+        System.out.println("wall time                    : " + wallMillis + " ms");
+        System.out.println("peak concurrent streams      : " + maxStreaming);
+        System.out.println("server threads before / peak : " + baselineThreads + " / " + sampler.peak);
+        System.out.println("streams per extra thread     : " + String.format("%.1f", maxStreaming / (double) extraThreads));
+        if (firstBytes.length > 0) {
+            System.out.println("first byte p50 / p99 / max   : " + percentile(firstBytes, 50) + " / "
+                    + percentile(firstBytes, 99) + " / " + firstBytes[firstBytes.length - 1] + " ms");
+        }
+        if (durations.length > 0) {
+            System.out.println("completion p50 / p99 / max   : " + percentile(durations, 50) + " / "
+                    + percentile(durations, 99) + " / " + durations[durations.length - 1] + " ms");
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * 后台线程每 200ms 读一次服务端的 jvm_threads_live
+     */
+    private static final class ServerThreadSampler extends Thread {
+        private final URL metricsUrl;
+        private volatile boolean running = true;
+        volatile int peak;
+
+        ServerThreadSampler(URL metricsUrl) {
+            super("server-thread-sampler");
+            this.metricsUrl = metricsUrl;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    peak = Math.max(peak, sample());
+                    Thread.sleep(200);
+                } catch (IOException ignored) {
+                    // 服务端忙不过来时偶尔读失败，下一轮再读
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        int sample() throws IOException {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(metricsUrl.openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("jvm_threads_live ")) {
+                        return Integer.parseInt(line.substring("jvm_threads_live ".length()).trim());
+                    }
+                }
+            }
+            return 0;
+        }
+
+        void finish() throws InterruptedException {
+            running = false;
+            join();
+        }
+    }
+
+    private static final class Connection {
+        final ByteBuffer request;
+        SocketChannel channel;
+        long firstByteNanos;
+        long endNanos;
+        boolean failed;
+
+        Connection(byte[] request) {
+            this.request = ByteBuffer.wrap(request);
+        }
+    }
+}
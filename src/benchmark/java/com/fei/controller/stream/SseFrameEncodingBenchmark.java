@@ -0,0 +1,80 @@
+package com.fei.controller.stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一条消息广播给 subscribers 个订阅者时的编码开销
+ * <p>
+ * perSubscriber：和原来 emitter.send("Message " + i) 一样，每个订阅者各自 SseEmitter.event().data(...) 再 getBytes
+ * sharedFrame：SseFrameEncoder 编码一次，所有订阅者写同一个 SseFrame
+ * <p>
+ * 运行：mvn -Pbenchmark compile exec:exec -Djmh.args="SseFrameEncodingBenchmark -prof gc"
+ * gc.alloc.rate.norm 是每广播一条消息的分配字节数，除以 subscribers 就是每个订阅者每条消息的分配。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SseFrameEncodingBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int subscribers;
+
+    private OutputStream[] outputs;
+    private int sequence;
+
+    @Setup
+    public void setUp() {
+        outputs = new OutputStream[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            outputs[i] = new DiscardingOutputStream();
+        }
+    }
+
+    @Benchmark
+    public void perSubscriber() throws IOException {
+        String message = "Message " + sequence++;
+        for (OutputStream out : outputs) {
+            for (ResponseBodyEmitter.DataWithMediaType part : SseEmitter.event().data(message).build()) {
+                out.write(part.getData().toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Benchmark
+    public void sharedFrame() throws IOException {
+        SseFrame frame = SseFrameEncoder.encode(-1, null, "Message " + sequence++);
+        for (OutputStream out : outputs) {
+            frame.writeTo(out);
+        }
+    }
+
+    static final class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
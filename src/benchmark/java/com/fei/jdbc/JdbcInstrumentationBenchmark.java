@@ -0,0 +1,89 @@
+package com.fei.jdbc;
+
+import ch.qos.logback.classic.Logger;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JDBC 埋点的开销：同样的查询、转账事务，直接用 Hikari 和套上 InstrumentedDataSource 的耗时对比
+ * <p>
+ * H2 在同一个进程里，单条语句只要几微秒，这里看到的开销占比是上限；换成走网络的 MySQL，占比会小得多。
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec -Djmh.args="JdbcInstrumentationBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(3)
+public class JdbcInstrumentationBenchmark {
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private HikariDataSource pool;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 不在 Spring Boot 里跑时 logback 默认是 DEBUG，JdbcTemplate 每条语句都打日志，量出来的主要是日志的耗时
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+        pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:jdbc_instrumentation_" + instrumented + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(
+                new ClassPathResource("transactional_listener_demo/schema.sql"),
+                new ClassPathResource("transactional_listener_demo/data.sql")).execute(pool);
+        DataSource dataSource = instrumented
+                ? new InstrumentedDataSource(pool, new JdbcMetrics(new JdbcMetricsProperties()))
+                : pool;
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public BigDecimal selectBalance() {
+        return jdbcTemplate.queryForObject(
+                "SELECT balance FROM transactional_listener_demo_account WHERE name = ?", BigDecimal.class, "Alice");
+    }
+
+    /**
+     * 一个事务里来回两次 UPDATE，余额不变：取连接、两条语句、commit 都会经过埋点
+     */
+    @Benchmark
+    public Integer transferTransaction() {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.update("UPDATE transactional_listener_demo_account SET balance = balance - ? WHERE name = ?", 1, "Alice");
+            return jdbcTemplate.update("UPDATE transactional_listener_demo_account SET balance = balance + ? WHERE name = ?", 1, "Alice");
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单笔转账（每笔一个事务、两次 UPDATE 往返）和批量转账（分块事务 + JDBC batch）的吞吐对比
+ * <p>
+ * 数据库用内嵌 H2（MySQL 兼容模式），见 TransferBenchmarkConfig。
+ * 结果按“每笔转账”计：
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec -Djmh.args="AccountTransferBenchmark"
+ * </pre>
+ * 注意 H2 在同一个进程里，没有网络往返，MySQL 上批量的优势会比这里更明显。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountTransferBenchmark {
+
+    private static final int TRANSFERS = 1000;
+
+    @Param({"100", "500"})
+    public int chunkSize;
+
+    private AnnotationConfigApplicationContext context;
+    private AccountService accountService;
+    private List<TransferRequest> transfers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("account.batch.chunk-size", chunkSize);
+        context = TransferBenchmarkConfig.start("transfer_benchmark", properties);
+        accountService = context.getBean(AccountService.class);
+        transfers = new ArrayList<>(TRANSFERS);
+        for (int i = 0; i < TRANSFERS; i++) {
+            // 来回转，余额保持不变
+            transfers.add(i % 2 == 0 ? new TransferRequest("Alice", "Bob", 1) : new TransferRequest("Bob", "Alice", 1));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRANSFERS)
+    public void singleTransfers() {
+        for (TransferRequest transfer : transfers) {
+            accountService.transfer(transfer.getFrom(), transfer.getTo(), transfer.getAmount());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRANSFERS)
+    public TransferBatchResult batchTransfers() {
+        return accountService.transferBatch(transfers.iterator());
+    }
+}
@@ -0,0 +1,156 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import com.fei.aop.count_method_call_count.LatencyHistogram;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * outbox relay 的吞吐和端到端延迟
+ * <p>
+ * 若干写线程持续做单笔转账（每笔在同一个事务里写一行 outbox），同时开若干 relay 线程消化 outbox，统计：
+ * 1. 写入速率和 relay 投递速率
+ * 2. 端到端延迟（写入 outbox 到投递）的分布
+ * 3. 写入停止后把积压清空还要多久
+ * 4. relay 的最大投递速率：直接往 outbox 里塞一大批积压，看多久清空
+ * <p>
+ * relay 线程数相当于节点数：每个 relay 线程都用 SKIP LOCKED 认领，和多个节点各开一个线程是一样的。
+ * <pre>
+ * mvn -Pbenchmark compile
+ * java -cp target/classes:&lt;依赖&gt; com.fei.listenerdemo.transactional_listener.OutboxRelayBenchmark [秒数] [写线程数] [relay 线程数] [page-size]
+ * </pre>
+ */
+public class OutboxRelayBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int relays = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int pageSize = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("account.outbox.enabled", true);
+        properties.put("account.outbox.relay-threads", relays);
+        properties.put("account.outbox.page-size", pageSize);
+        properties.put("account.outbox.poll-interval-millis", 20);
+        try (AnnotationConfigApplicationContext context = TransferBenchmarkConfig.start("outbox_benchmark", properties,
+                OutboxBenchmarkConfig.class, TransactionalOutbox.class, OutboxRelay.class)) {
+            AccountService accountService = context.getBean(AccountService.class);
+            OutboxRelay relay = context.getBean(OutboxRelay.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            int backlogRows = 200_000;
+            List<Object[]> rows = new ArrayList<>(backlogRows);
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < backlogRows; i++) {
+                rows.add(new Object[]{"Alice", "backlog " + i, now});
+            }
+            // relay 启动前先塞好积压，测的是纯投递速率
+            jdbcTemplate.batchUpdate("INSERT INTO transactional_listener_demo_outbox (account, msg, created_at_millis)"
+                    + " VALUES (?, ?, ?)", rows);
+            long backlogStart = System.nanoTime();
+            relay.start();
+            while (relay.getRelayedCount() < backlogRows) {
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            double backlogSeconds = (System.nanoTime() - backlogStart) / 1e9;
+
+            LongAdder written = new LongAdder();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                Thread writer = new Thread(() -> {
+                    while (System.nanoTime() < deadline) {
+                        boolean forward = ThreadLocalRandom.current().nextBoolean();
+                        try {
+                            accountService.transfer(forward ? "Alice" : "Bob", forward ? "Bob" : "Alice", 1);
+                            written.increment();
+                        } catch (RuntimeException ignored) {
+                            // 锁冲突重试用完了之类的，不计入写入数
+                        }
+                    }
+                });
+                threads.add(writer);
+                writer.start();
+            }
+            for (Thread writer : threads) {
+                writer.join();
+            }
+            long relayedDuringLoad = relay.getRelayedCount() - backlogRows;
+            long backlog = count(jdbcTemplate);
+
+            long drainStart = System.nanoTime();
+            while (count(jdbcTemplate) > 0) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            long drainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - drainStart);
+
+            LatencyHistogram lag = context.getBean(RecordingSink.class).lag;
+            long[] values = new long[3];
+            lag.percentiles(new double[]{50, 99, 99.9}, values);
+            System.out.println("writers / relays / page size : " + writers + " / " + relays + " / " + pageSize);
+            System.out.println("written events/s             : " + written.sum() / seconds);
+            System.out.println("relayed events/s under load  : " + relayedDuringLoad / seconds);
+            System.out.println("backlog when writers stopped : " + backlog + " (drained in " + drainMillis + " ms)");
+            System.out.println("end-to-end lag p50/p99/p99.9 : " + millis(values[0]) + " / " + millis(values[1]) + " / "
+                    + millis(values[2]) + " ms");
+            System.out.println("relay max throughput         : " + String.format("%.0f", backlogRows / backlogSeconds)
+                    + " events/s (" + backlogRows + " rows backlog)");
+
+        }
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactional_listener_demo_outbox", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * outbox 相关的配置和投递目标；故意不加 @Configuration，原因同 TransferBenchmarkConfig
+     */
+    static class OutboxBenchmarkConfig {
+
+        @Bean
+        public OutboxProperties outboxProperties(Environment environment) {
+            OutboxProperties properties = new OutboxProperties();
+            properties.setRelayThreads(environment.getRequiredProperty("account.outbox.relay-threads", Integer.class));
+            properties.setPageSize(environment.getRequiredProperty("account.outbox.page-size", Integer.class));
+            properties.setPollIntervalMillis(environment.getRequiredProperty("account.outbox.poll-interval-millis", Long.class));
+            return properties;
+        }
+
+        @Bean
+        public RecordingSink recordingSink() {
+            return new RecordingSink();
+        }
+    }
+
+    /**
+     * 什么也不投递，只记录转账产生的消息的端到端延迟（预先塞进去的积压不算）
+     */
+    static class RecordingSink implements OutboxEventSink {
+        final LatencyHistogram lag = new LatencyHistogram();
+
+        @Override
+        public void deliver(List<OutboxMessage> messages) {
+            long now = System.currentTimeMillis();
+            for (OutboxMessage message : messages) {
+                if (!message.getMsg().startsWith("backlog ")) {
+                    lag.record(TimeUnit.MILLISECONDS.toNanos(now - message.getCreatedAtMillis()));
+                }
+            }
+        }
+    }
+}
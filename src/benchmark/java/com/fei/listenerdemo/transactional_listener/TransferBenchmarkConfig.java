@@ -0,0 +1,70 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * 转账相关基准测试共用的最小容器：内嵌 H2（MySQL 兼容模式）+ JdbcTemplate + 事务管理器 + AccountService
+ * <p>
+ * 表结构和初始数据复用 transactional_listener_demo 下的 schema.sql / data.sql。
+ * 故意不加 @Configuration：基准测试的类和主程序编译到同一个目录，加了会被 MainApplication 的组件扫描扫到。
+ */
+@EnableTransactionManagement
+class TransferBenchmarkConfig {
+
+    /**
+     * @param extraComponents 除了 AccountService 以外还要注册进容器的组件，比如 TransactionalOutbox
+     */
+    static AnnotationConfigApplicationContext start(String databaseName, Map<String, Object> properties,
+                                                    Class<?>... extraComponents) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        properties.put("benchmark.database-name", databaseName);
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        context.register(TransferBenchmarkConfig.class, AccountService.class);
+        if (extraComponents.length > 0) {
+            context.register(extraComponents);
+        }
+        context.refresh();
+        return context;
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource dataSource(Environment environment) {
+        HikariDataSource dataSource = new HikariDataSource();
+        // 锁等待超时调短一点，死锁检测不到的环也能尽快暴露出来
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + environment.getProperty("benchmark.database-name")
+                + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=200");
+        dataSource.setMaximumPoolSize(64);
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("transactional_listener_demo/schema.sql"),
+                new ClassPathResource("transactional_listener_demo/data.sql"));
+        populator.execute(dataSource);
+        return dataSource;
+    }
+
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+
+    @Bean
+    public DataSourceTransactionManager transactionManager(DataSource dataSource) {
+        return new DataSourceTransactionManager(dataSource);
+    }
+
+    @Bean
+    public AccountTransferProperties accountTransferProperties() {
+        return new AccountTransferProperties();
+    }
+}
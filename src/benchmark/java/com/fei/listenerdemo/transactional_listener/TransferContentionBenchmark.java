@@ -0,0 +1,99 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 高争用下的转账吞吐：所有线程都在 Alice、Bob 两个账户之间随机方向来回转账，线程数逐步增加
+ * <p>
+ * 对比两种写法：
+ * - legacy：原来的写法，先扣 from 再加 to 两条 UPDATE，反向转账加锁顺序相反，会死锁 / 锁等待超时，失败不重试
+ * - ordered：AccountService.transfer，一条按索引顺序加锁的 CASE UPDATE，遇到锁冲突退避重试
+ * <p>
+ * 用法：
+ * <pre>
+ * mvn -Pbenchmark compile
+ * java -cp target/classes:&lt;依赖&gt; com.fei.listenerdemo.transactional_listener.TransferContentionBenchmark [秒数] [线程数...]
+ * </pre>
+ */
+public class TransferContentionBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int[] threadCounts = {1, 2, 4, 8, 16, 32};
+        if (args.length > 1) {
+            threadCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        try (AnnotationConfigApplicationContext context = TransferBenchmarkConfig.start("contention_benchmark", new HashMap<>())) {
+            AccountService accountService = context.getBean(AccountService.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+            System.out.printf("%-8s %8s %14s %10s %10s%n", "path", "threads", "transfers/s", "failed", "retries");
+            for (int threads : threadCounts) {
+                Result legacy = run(threads, seconds, (from, to) -> transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.update("UPDATE transactional_listener_demo_account SET balance = balance - ? WHERE name = ?", 1, from);
+                    jdbcTemplate.update("UPDATE transactional_listener_demo_account SET balance = balance + ? WHERE name = ?", 1, to);
+                }));
+                System.out.printf("%-8s %8d %14.0f %10d %10s%n", "legacy", threads, legacy.throughput(seconds), legacy.failed.sum(), "-");
+
+                long retriesBefore = accountService.getLockRetries();
+                Result ordered = run(threads, seconds, (from, to) -> accountService.transfer(from, to, 1));
+                System.out.printf("%-8s %8d %14.0f %10d %10d%n", "ordered", threads, ordered.throughput(seconds), ordered.failed.sum(),
+                        accountService.getLockRetries() - retriesBefore);
+            }
+        }
+    }
+
+    private static Result run(int threads, int seconds, TransferAction action) throws InterruptedException {
+        Result result = new Result();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    boolean forward = ThreadLocalRandom.current().nextBoolean();
+                    try {
+                        action.transfer(forward ? "Alice" : "Bob", forward ? "Bob" : "Alice");
+                        result.completed.increment();
+                    } catch (DataAccessException | TransferRejectedException e) {
+                        result.failed.increment();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return result;
+    }
+
+    private interface TransferAction {
+        void transfer(String from, String to);
+    }
+
+    private static final class Result {
+        final LongAdder completed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+
+        double throughput(int seconds) {
+            return completed.sum() / (double) seconds;
+        }
+    }
+}
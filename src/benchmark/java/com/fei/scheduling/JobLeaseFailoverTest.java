@@ -0,0 +1,251 @@
+package com.fei.scheduling;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 集群租约的验证：同一个 JVM 里起几个容器当作几个节点，共用一个内嵌 H2（MySQL 兼容模式）里的租约表
+ * <p>
+ * 每个节点上都有同样的三个集群租约任务（每 100 ms 触发一次，执行 30 ms），整个过程：
+ * 1. 所有节点一起跑一段时间
+ * 2. 模拟宕机：关掉某个任务当前持有者的容器，但不释放租约（release-on-shutdown=false），别的节点要等租约过期才能接手
+ * 3. 正常停机：关掉新的持有者，释放租约，别的节点下一轮续约就接手
+ * 最后检查每个任务的所有执行：不同节点的执行在时间上没有重叠、fencing token 随时间单调不减且每个 token 只属于一个节点，
+ * 并打印每次换节点的间隔，和理论上限（宕机：ttl + 续约间隔 + 触发周期；正常停机：续约间隔 + 触发周期）对比。
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.main=com.fei.scheduling.JobLeaseFailoverTest -Dbenchmark.args="3 2000 300"
+ * </pre>
+ * 参数：nodes ttlMillis renewIntervalMillis；有违反时以非 0 状态退出
+ */
+public class JobLeaseFailoverTest {
+
+    private static final long TICK_MILLIS = 100;
+    private static final Queue<Execution> EXECUTIONS = new ConcurrentLinkedQueue<>();
+
+    public static void main(String[] args) throws Exception {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        long ttl = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+        long renewInterval = args.length > 2 ? Long.parseLong(args[2]) : 300;
+        if (nodeCount < 3) {
+            throw new IllegalArgumentException("至少 3 个节点：宕机和正常停机各关掉一个，还要剩一个接手");
+        }
+
+        Map<String, AnnotationConfigApplicationContext> nodes = new LinkedHashMap<>();
+        for (int i = 1; i <= nodeCount; i++) {
+            String nodeId = "node-" + i;
+            nodes.put(nodeId, startNode(nodeId, ttl, renewInterval));
+        }
+        TimeUnit.SECONDS.sleep(3);
+
+        String crashed = currentOwner("leaseA");
+        System.out.println("模拟宕机：" + crashed + "（不释放租约）");
+        AnnotationConfigApplicationContext crashedNode = nodes.remove(crashed);
+        crashedNode.getBean(JobLeaseProperties.class).setReleaseOnShutdown(false);
+        crashedNode.close();
+        TimeUnit.MILLISECONDS.sleep(ttl + renewInterval + 2000);
+
+        String stopped = currentOwner("leaseA");
+        System.out.println("正常停机：" + stopped);
+        nodes.remove(stopped).close();
+        TimeUnit.MILLISECONDS.sleep(renewInterval + 2000);
+        for (AnnotationConfigApplicationContext node : nodes.values()) {
+            node.close();
+        }
+
+        boolean ok = true;
+        Map<String, List<Execution>> byJob = EXECUTIONS.stream()
+                .collect(Collectors.groupingBy(e -> e.job, LinkedHashMap::new, Collectors.toList()));
+        for (Map.Entry<String, List<Execution>> entry : byJob.entrySet()) {
+            ok &= check(entry.getKey(), entry.getValue(), crashed, stopped, ttl, renewInterval);
+        }
+        System.out.println(ok ? "OK" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean check(String job, List<Execution> executions, String crashed, String stopped,
+                                 long ttl, long renewInterval) {
+        executions.sort(Comparator.comparingLong(e -> e.startNanos));
+        Map<String, Integer> perNode = new LinkedHashMap<>();
+        Map<Long, String> tokenOwners = new HashMap<>();
+        int overlaps = 0;
+        int tokenViolations = 0;
+        List<String> handovers = new ArrayList<>();
+        boolean ok = true;
+        for (int i = 0; i < executions.size(); i++) {
+            Execution current = executions.get(i);
+            perNode.merge(current.node, 1, Integer::sum);
+            String owner = tokenOwners.putIfAbsent(current.token, current.node);
+            if (owner != null && !owner.equals(current.node)) {
+                tokenViolations++;
+            }
+            if (i == 0) {
+                continue;
+            }
+            Execution previous = executions.get(i - 1);
+            if (current.token < previous.token) {
+                tokenViolations++;
+            }
+            if (!current.node.equals(previous.node)) {
+                if (current.startNanos < previous.endNanos) {
+                    overlaps++;
+                }
+                double gap = (current.startNanos - previous.endNanos) / 1e6;
+                long bound = previous.node.equals(crashed) ? ttl + renewInterval + TICK_MILLIS
+                        : previous.node.equals(stopped) ? renewInterval + TICK_MILLIS : -1;
+                handovers.add(String.format(Locale.ROOT, "%s -> %s（token %d -> %d）间隔 %.0f ms%s",
+                        previous.node, current.node, previous.token, current.token, gap, bound < 0 ? "" : "，上限 " + bound + " ms"));
+                if (bound >= 0 && gap > bound) {
+                    ok = false;
+                }
+            }
+        }
+        System.out.println();
+        System.out.println(job + "：执行 " + executions.size() + " 次，各节点 " + perNode
+                + "，不同节点重叠 " + overlaps + " 次，token 违反 " + tokenViolations + " 次");
+        handovers.forEach(h -> System.out.println("  " + h));
+        return ok && overlaps == 0 && tokenViolations == 0;
+    }
+
+    private static String currentOwner(String job) {
+        Execution last = null;
+        for (Execution execution : EXECUTIONS) {
+            if (execution.job.equals(job) && (last == null || execution.startNanos > last.startNanos)) {
+                last = execution;
+            }
+        }
+        if (last == null) {
+            throw new IllegalStateException(job + " 还没有在任何节点上执行过");
+        }
+        return last.node;
+    }
+
+    private static AnnotationConfigApplicationContext startNode(String nodeId, long ttl, long renewInterval) {
+        JobLeaseProperties properties = new JobLeaseProperties();
+        properties.setNodeId(nodeId);
+        properties.setTtlMillis(ttl);
+        properties.setRenewIntervalMillis(renewInterval);
+        properties.setSafetyMarginMillis(Math.min(1000, ttl / 5));
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(JobLeaseProperties.class, () -> properties);
+        context.registerBean(LeasedJobs.class, () -> new LeasedJobs(nodeId));
+        context.register(NodeConfig.class, ScheduledJobMonitor.class, JobLeaseManager.class);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * 一个节点的最小容器；故意不加 @Configuration，免得被 MainApplication 的组件扫描扫到
+     */
+    @EnableScheduling
+    static class NodeConfig implements SchedulingConfigurer {
+
+        @Autowired
+        private ThreadPoolTaskScheduler taskScheduler;
+        @Autowired
+        private ScheduledJobMonitor monitor;
+
+        @Bean(destroyMethod = "close")
+        public HikariDataSource dataSource() {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl("jdbc:h2:mem:job_lease;MODE=MySQL;DB_CLOSE_DELAY=-1");
+            new ResourceDatabasePopulator(new ClassPathResource("transactional_listener_demo/schema.sql")).execute(dataSource);
+            return dataSource;
+        }
+
+        @Bean
+        public JdbcTemplate jdbcTemplate(HikariDataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        public ScheduledJobProperties scheduledJobProperties() {
+            return new ScheduledJobProperties();
+        }
+
+        @Bean
+        public ThreadPoolTaskScheduler taskScheduler() {
+            ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+            scheduler.setPoolSize(4);
+            // 和 SchedulerConfig 一样优雅停机，不中断正在执行的任务
+            scheduler.setWaitForTasksToCompleteOnShutdown(true);
+            scheduler.setAwaitTerminationSeconds(5);
+            return scheduler;
+        }
+
+        @Override
+        public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+            taskRegistrar.setTaskScheduler(monitor.instrument(taskScheduler));
+        }
+    }
+
+    static class LeasedJobs {
+
+        private final String nodeId;
+
+        LeasedJobs(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        @Scheduled(fixedRate = TICK_MILLIS)
+        @ScheduledJob(name = "leaseA", clusterLease = true)
+        public void leaseA() throws InterruptedException {
+            record("leaseA");
+        }
+
+        @Scheduled(fixedDelay = TICK_MILLIS)
+        @ScheduledJob(name = "leaseB", clusterLease = true)
+        public void leaseB() throws InterruptedException {
+            record("leaseB");
+        }
+
+        @Scheduled(fixedRate = TICK_MILLIS)
+        @ScheduledJob(name = "leaseC", clusterLease = true, poolSize = 1)
+        public void leaseC() throws InterruptedException {
+            record("leaseC");
+        }
+
+        private void record(String job) throws InterruptedException {
+            long start = System.nanoTime();
+            TimeUnit.MILLISECONDS.sleep(30);
+            EXECUTIONS.add(new Execution(job, nodeId, JobLease.current().getFencingToken(), start, System.nanoTime()));
+        }
+    }
+
+    private static final class Execution {
+        final String job;
+        final String node;
+        final long token;
+        final long startNanos;
+        final long endNanos;
+
+        Execution(String job, String node, long token, long startNanos, long endNanos) {
+            this.job = job;
+            this.node = node;
+            this.token = token;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+    }
+}
@@ -1,6 +1,19 @@
 package com.fei;
 
 import com.fei.beans.Car;
+import com.fei.controller.stream.ChatStreamProperties;
+import com.fei.controller.stream.SseHubProperties;
+import com.fei.jdbc.JdbcMetricsProperties;
+import com.fei.listenerdemo.transactional_listener.AccountExportProperties;
+import com.fei.listenerdemo.transactional_listener.AccountTransferProperties;
+import com.fei.listenerdemo.transactional_listener.AfterCommitDispatchProperties;
+import com.fei.listenerdemo.transactional_listener.BalanceCacheProperties;
+import com.fei.listenerdemo.transactional_listener.GroupCommitProperties;
+import com.fei.listenerdemo.transactional_listener.IdempotencyProperties;
+import com.fei.listenerdemo.transactional_listener.OutboxProperties;
+import com.fei.listenerdemo.warmup.WarmupProperties;
+import com.fei.scheduling.JobLeaseProperties;
+import com.fei.scheduling.ScheduledJobProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -18,7 +31,11 @@ import org.springframework.context.ConfigurableApplicationContext;
  * 3. 这样你就可以在其他地方通过 @Autowired 直接注入 Car，属性值也会自动填充。
  */
 @SpringBootApplication
-@EnableConfigurationProperties(Car.class)
+@EnableConfigurationProperties({Car.class, SseHubProperties.class, ChatStreamProperties.class, GroupCommitProperties.class,
+        AccountTransferProperties.class, AfterCommitDispatchProperties.class, OutboxProperties.class,
+        BalanceCacheProperties.class, JdbcMetricsProperties.class, IdempotencyProperties.class,
+        AccountExportProperties.class, WarmupProperties.class, ScheduledJobProperties.class,
+        JobLeaseProperties.class})
 public class MainApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,61 @@
+// CallRateWindow.java
+package com.fei.aop.count_method_call_count;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 最近 15 分钟、按秒分桶的调用次数环形窗口，用来计算 1/5/15 分钟内的平均每秒调用次数
+ * <p>
+ * 窗口不在调用线程上维护：每秒由 MethodCallCounterService 的定时任务读一次 LongAdder 的累计值，
+ * 把和上一秒的差值写进当前秒对应的桶里。所以：
+ * 1. 调用线程（切面）完全感知不到窗口的存在，没有额外的争用
+ * 2. 只有定时任务这一个线程写，轮转时不需要任何锁
+ * 3. 每个桶把“秒级时间戳”和“次数”打包进同一个 long，读的时候能一次性拿到一致的值，过期的桶直接按 0 算
+ */
+public class CallRateWindow {
+
+    public static final int WINDOW_SECONDS = 15 * 60;
+
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(WINDOW_SECONDS);
+    // 只有定时任务线程读写
+    private long lastTotal;
+
+    /**
+     * 定时任务每秒调用一次；如果定时任务延迟了几秒，这几秒的调用会全部算到当前这一秒里。
+     * 抖动或者 fixedRate 补跑错过的执行时，同一秒里可能 tick 多次，这时累加到这一秒已有的次数上，不能覆盖
+     */
+    void tick(long epochSecond, long total) {
+        long delta = Math.max(total - lastTotal, 0);
+        lastTotal = total;
+        int index = index(epochSecond);
+        long packed = buckets.get(index);
+        if ((packed >>> 32) == epochSecond) {
+            delta += packed & COUNT_MASK;
+        }
+        // 只有定时任务线程写，get 之后直接 set 不会丢别人的更新
+        buckets.lazySet(index, (epochSecond << 32) | Math.min(delta, COUNT_MASK));
+    }
+
+    /**
+     * @param seconds     窗口长度（秒），不超过 WINDOW_SECONDS
+     * @param epochSecond 最近一次 tick 的秒级时间戳
+     * @return 窗口内平均每秒调用次数
+     */
+    double ratePerSecond(int seconds, long epochSecond) {
+        long sum = 0;
+        for (int i = 0; i < seconds; i++) {
+            long second = epochSecond - i;
+            long packed = buckets.get(index(second));
+            if ((packed >>> 32) == second) {
+                sum += packed & COUNT_MASK;
+            }
+        }
+        return sum / (double) seconds;
+    }
+
+    private static int index(long epochSecond) {
+        return (int) (epochSecond % WINDOW_SECONDS);
+    }
+}
@@ -0,0 +1,99 @@
+// LatencyHistogram.java
+package com.fei.aop.count_method_call_count;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁、固定内存的对数-线性直方图（思路同 HdrHistogram），用来记录方法耗时（单位：纳秒）
+ * <p>
+ * 分桶方式：
+ * 1. 小于 2^SUB_BUCKET_BITS 的值每个值一个桶
+ * 2. 更大的值按 2 的幂划分区间，每个区间内再线性切成 2^(SUB_BUCKET_BITS-1) 个桶，
+ *    所以任何一个值落到桶里后的相对误差都不超过 1/64
+ * <p>
+ * 桶数量在类加载时就确定了（约 2400 个 long，不到 20KB），之后不会再扩容；
+ * 记录时只有几次原子累加，不分配对象，多个线程可以同时写入。
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+    // 最大可记录 2^42 ns（约 73 分钟），更大的值按最大值记录
+    private static final long MAX_TRACKABLE_VALUE = (1L << 42) - 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_TRACKABLE_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : Math.min(nanos, MAX_TRACKABLE_VALUE);
+        buckets.incrementAndGet(bucketIndex(value));
+        totalNanos.add(value);
+        long currentMax;
+        while (value > (currentMax = maxNanos.get())) {
+            if (maxNanos.compareAndSet(currentMax, value)) {
+                break;
+            }
+        }
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * 一次遍历算出多个百分位的值
+     *
+     * @param percentiles 升序排列的百分位，比如 {50, 90, 99, 99.9}
+     * @param out         与 percentiles 等长，写入对应的耗时（纳秒）
+     * @return 参与计算的总样本数
+     */
+    public long percentiles(double[] percentiles, long[] out) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.get(i);
+        }
+        long max = maxNanos.get();
+        int next = 0;
+        if (total > 0) {
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_COUNT && next < percentiles.length; i++) {
+                cumulative += buckets.get(i);
+                while (next < percentiles.length
+                        && cumulative >= Math.max(1, (long) Math.ceil(percentiles[next] / 100.0 * total))) {
+                    out[next++] = Math.min(highestEquivalentValue(i), max);
+                }
+            }
+        }
+        // 没有样本，或者遍历期间有并发写入导致总数对不上时，剩下的百分位用最大值兜底
+        while (next < percentiles.length) {
+            out[next++] = max;
+        }
+        return total;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < (1L << SUB_BUCKET_BITS)) {
+            return (int) value;
+        }
+        // shift = 最高位位置 - (SUB_BUCKET_BITS - 1)，value >>> shift 正好保留最高的 SUB_BUCKET_BITS 位
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < (1 << SUB_BUCKET_BITS)) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+        long subBucket = index - (long) shift * SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
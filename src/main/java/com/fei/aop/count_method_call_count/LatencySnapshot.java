@@ -0,0 +1,36 @@
+// LatencySnapshot.java
+package com.fei.aop.count_method_call_count;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 某个方法耗时分布的快照，时间单位统一为毫秒，供 /stats/latency 返回
+ */
+@Getter
+@AllArgsConstructor
+public class LatencySnapshot {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final long count;
+    private final double meanMs;
+    private final double p50Ms;
+    private final double p90Ms;
+    private final double p99Ms;
+    private final double p999Ms;
+    private final double maxMs;
+
+    public static LatencySnapshot of(LatencyHistogram histogram) {
+        long[] values = new long[PERCENTILES.length];
+        long count = histogram.percentiles(PERCENTILES, values);
+        double mean = count == 0 ? 0 : histogram.getTotalNanos() / (double) count / NANOS_PER_MILLI;
+        return new LatencySnapshot(count, mean,
+                values[0] / NANOS_PER_MILLI,
+                values[1] / NANOS_PER_MILLI,
+                values[2] / NANOS_PER_MILLI,
+                values[3] / NANOS_PER_MILLI,
+                histogram.getMaxNanos() / NANOS_PER_MILLI);
+    }
+}
@@ -1,11 +1,11 @@
 // MethodCallCounterAspect.java
 package com.fei.aop.count_method_call_count;
 
-import lombok.AllArgsConstructor;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
@@ -13,20 +13,39 @@ import java.lang.reflect.Method;
 
 @Aspect
 @Component
-@AllArgsConstructor
 public class MethodCallCounterAspect {
 
     private final ApplicationEventPublisher eventPublisher;
+    private final MethodCallCounterService counterService;
+    // true：沿用原来的事件发布模式；false（默认）：直接写入预注册的 LongAdder 槽位
+    private final boolean eventMode;
+
+    public MethodCallCounterAspect(ApplicationEventPublisher eventPublisher,
+                                   MethodCallCounterService counterService,
+                                   @Value("${method-call-count.mode:direct}") String mode) {
+        this.eventPublisher = eventPublisher;
+        this.counterService = counterService;
+        this.eventMode = "event".equalsIgnoreCase(mode);
+    }
 
     @Around("@annotation(com.fei.aop.count_method_call_count.MethodCallCount)")
     public Object countMethodCall(ProceedingJoinPoint pjp) throws Throwable {
         Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        int id = counterService.idOf(method);
+        long start = System.nanoTime();
         try {
             return pjp.proceed();
         } finally {
-            eventPublisher.publishEvent(method.getName());
+            // 耗时无论哪种模式都直接写入直方图
+            counterService.recordLatency(id, System.nanoTime() - start);
+            if (eventMode) {
+                // 每次调用都会包装成 PayloadApplicationEvent 并遍历监听器缓存，高并发下分配和争用都比较明显
+                eventPublisher.publishEvent(method);
+            } else {
+                counterService.recordCall(id);
+            }
             // 避免用这个，每次都 new，如果并发量比较高的话，就有点浪费内存了
-//            eventPublisher.publishEvent(new MethodCallEvent(this, method.getName()));
+//            eventPublisher.publishEvent(new MethodCallEvent(this, method));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+// MethodCallCounterRegistrar.java
+package com.fei.aop.count_method_call_count;
+
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * 在 Bean 创建（也就是代理创建）的时候，把所有标注了 @MethodCallCount 的方法提前注册到 MethodCallCounterService，
+ * 这样切面在每次调用时只需要按 Method 取出已经存在的槽位，不用在热路径上 computeIfAbsent。
+ */
+@Component
+public class MethodCallCounterRegistrar implements BeanPostProcessor {
+
+    private final MethodCallCounterService counterService;
+
+    public MethodCallCounterRegistrar(MethodCallCounterService counterService) {
+        this.counterService = counterService;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Class<?> targetClass = AopUtils.getTargetClass(bean);
+        ReflectionUtils.doWithMethods(targetClass, counterService::register,
+                method -> AnnotatedElementUtils.hasAnnotation(method, MethodCallCount.class));
+        return bean;
+    }
+}
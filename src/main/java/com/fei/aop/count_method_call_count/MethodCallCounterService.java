@@ -2,31 +2,108 @@
 package com.fei.aop.count_method_call_count;
 
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.lang.reflect.Method;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class MethodCallCounterService {
-    private final Map<String, AtomicInteger> methodCallCountMap = new ConcurrentHashMap<>();
+    // Method -> id -> 统计槽位；统计按 Method 区分，重载、不同 Bean 上的同名方法不会合并
+    private final MethodIdentityRegistry registry = new MethodIdentityRegistry();
+    // 最近一次窗口轮转的秒级时间戳
+    private volatile long lastTickSecond = currentEpochSecond();
 
+    /**
+     * 预先给一个方法分配 id 和统计槽位，由 MethodCallCounterRegistrar 在 Bean 创建时调用
+     */
+    public int register(Method method) {
+        return registry.idOf(method);
+    }
+
+    /**
+     * 切面热路径：已注册的方法只是一次 get，没有任何对象分配；
+     * 没被提前注册到的（比如 JDK 代理拿到的是接口上的 Method）才会走一次注册
+     */
+    public int idOf(Method method) {
+        return registry.idOf(method);
+    }
+
+    public void recordCall(int id) {
+        registry.get(id).recordCall();
+    }
+
+    public void recordLatency(int id, long nanos) {
+        registry.get(id).recordLatency(nanos);
+    }
+
+    /**
+     * 事件模式（method-call-count.mode=event）下的计数入口
+     */
     @EventListener
-    public void handleMethodCallEvent(String methodName) {
-        methodCallCountMap.computeIfAbsent(methodName, k -> new AtomicInteger(0))
-                         .incrementAndGet();
+    public void handleMethodCallEvent(Method method) {
+        recordCall(idOf(method));
+    }
+
+    /**
+     * 每秒把各方法的累计调用次数差值写进滑动窗口，只有这一个线程写窗口，调用线程不受影响
+     */
+    @Scheduled(fixedRate = 1000)
+    public void rotateRateWindows() {
+        long now = currentEpochSecond();
+        for (MethodCallMetrics metrics : registry.all()) {
+            metrics.tick(now);
+        }
+        lastTickSecond = now;
+    }
+
+    /**
+     * 所有统计槽位的只读视图（不复制），给 OpenMetricsExporter 直接遍历
+     */
+    public Collection<MethodCallMetrics> getAllMetrics() {
+        return registry.all();
     }
 
-    public int getMethodCallCount(String methodName) {
-        AtomicInteger counter = methodCallCountMap.get(methodName);
-        return counter == null ? 0 : counter.get();
+    /**
+     * @param methodName Class#method(params) 形式的方法名
+     */
+    public long getMethodCallCount(String methodName) {
+        int id = registry.idOf(methodName);
+        return id < 0 ? 0 : registry.get(id).getCallCount();
     }
 
-    public Map<String, Integer> getAllMethodCallCounts() {
-        Map<String, Integer> result = new ConcurrentHashMap<>();
-        methodCallCountMap.forEach((k, v) -> result.put(k, v.get()));
+    public Map<String, Long> getAllMethodCallCounts() {
+        Map<String, Long> result = new ConcurrentHashMap<>();
+        registry.all().forEach(v -> result.put(v.getMethodName(), v.getCallCount()));
         return result;
     }
-}
\ No newline at end of file
+
+    public Map<String, MethodCallStats> getAllMethodCallStats() {
+        long tickSecond = lastTickSecond;
+        Map<String, MethodCallStats> result = new ConcurrentHashMap<>();
+        registry.all().forEach(v -> result.put(v.getMethodName(), v.getStats(tickSecond)));
+        return result;
+    }
+
+    /**
+     * 给抓取方用：返回每个方法自上一次快照以来的调用次数，同时重置
+     */
+    public Map<String, Long> snapshotAndReset() {
+        Map<String, Long> result = new ConcurrentHashMap<>();
+        registry.all().forEach(v -> result.put(v.getMethodName(), v.snapshotAndReset()));
+        return result;
+    }
+
+    public Map<String, LatencySnapshot> getAllLatencySnapshots() {
+        Map<String, LatencySnapshot> result = new ConcurrentHashMap<>();
+        registry.all().forEach(v -> result.put(v.getMethodName(), v.getLatencySnapshot()));
+        return result;
+    }
+
+    private static long currentEpochSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
@@ -0,0 +1,103 @@
+// MethodCallMetrics.java
+package com.fei.aop.count_method_call_count;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 单个被 @MethodCallCount 标注的方法对应的统计槽位
+ * <p>
+ * 槽位在代理创建时（见 MethodCallCounterRegistrar）就预先注册好，切面热路径上只需要拿到槽位直接累加：
+ * 1. LongAdder 内部按线程哈希分散到多个 Cell 上累加，高并发下不会像 AtomicInteger 那样争抢同一个缓存行
+ * 2. 累加本身不创建任何对象，不会像 publishEvent 那样每次调用都包装一个 PayloadApplicationEvent
+ * 3. 每个方法还带一个固定大小的耗时直方图（LatencyHistogram），同样无锁、无分配
+ * 4. 调用次数只增不减（64 位），“快照并重置”是通过移动基线实现的，不会和正在累加的线程抢
+ * 5. 槽位按 MethodIdentityRegistry 分配的 id 存放，方法名只在第一次读取时才解析
+ */
+public class MethodCallMetrics {
+
+    private final int id;
+    private final Supplier<String> methodNameResolver;
+    private volatile String methodName;
+    private final LongAdder calls = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final CallRateWindow rateWindow = new CallRateWindow();
+    // 上一次 snapshotAndReset 时的累计调用次数
+    private final AtomicLong resetBaseline = new AtomicLong();
+
+    public MethodCallMetrics(int id, Supplier<String> methodNameResolver) {
+        this.id = id;
+        this.methodNameResolver = methodNameResolver;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getMethodName() {
+        String name = methodName;
+        if (name == null) {
+            // 并发读时可能重复解析，结果都一样，不需要加锁
+            name = methodNameResolver.get();
+            methodName = name;
+        }
+        return name;
+    }
+
+    public void recordCall() {
+        calls.increment();
+    }
+
+    public void recordLatency(long nanos) {
+        latency.record(nanos);
+    }
+
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * 返回自上一次快照以来的调用次数，并把基线移动到当前累计值。
+     * <p>
+     * 基线只会往前移动，多个抓取方并发调用时，每一次调用都只会被其中一个快照计入一次。
+     */
+    public long snapshotAndReset() {
+        long total = calls.sum();
+        while (true) {
+            long baseline = resetBaseline.get();
+            if (total <= baseline) {
+                return 0;
+            }
+            if (resetBaseline.compareAndSet(baseline, total)) {
+                return total - baseline;
+            }
+        }
+    }
+
+    void tick(long epochSecond) {
+        rateWindow.tick(epochSecond, calls.sum());
+    }
+
+    public MethodCallStats getStats(long epochSecond) {
+        return new MethodCallStats(getCallCount(),
+                rateWindow.ratePerSecond(60, epochSecond),
+                rateWindow.ratePerSecond(5 * 60, epochSecond),
+                rateWindow.ratePerSecond(15 * 60, epochSecond));
+    }
+
+    /**
+     * 直接在直方图上算百分位，不创建快照对象，给 OpenMetricsExporter 用
+     */
+    public long latencyPercentiles(double[] percentiles, long[] out) {
+        return latency.percentiles(percentiles, out);
+    }
+
+    public long getLatencyTotalNanos() {
+        return latency.getTotalNanos();
+    }
+
+    public LatencySnapshot getLatencySnapshot() {
+        return LatencySnapshot.of(latency);
+    }
+}
@@ -0,0 +1,17 @@
+// MethodCallStats.java
+package com.fei.aop.count_method_call_count;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * /stats 返回的单个方法统计：启动以来的累计调用次数，以及最近 1/5/15 分钟的平均每秒调用次数
+ */
+@Getter
+@AllArgsConstructor
+public class MethodCallStats {
+    private final long count;
+    private final double rate1m;
+    private final double rate5m;
+    private final double rate15m;
+}
@@ -0,0 +1,106 @@
+// MethodIdentityRegistry.java
+package com.fei.aop.count_method_call_count;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 方法身份登记表：给每个被统计的 Method 分配一个紧凑的 int id，统计槽位按 id 放在数组里
+ * <p>
+ * 1. 以 Method 本身作为身份，重载方法、不同 Bean 上的同名方法各自独立计数，不会再因为 getName() 相同被合并
+ * 2. id 只在第一次见到这个 Method 时分配一次（通常是代理创建时），热路径上不拼接任何字符串
+ * 3. 可读的名字（Class#method(params)）只在读统计的时候才解析，并且解析一次后就缓存在槽位里；
+ *    参数类型用全限定名，java.util.Date 和 java.sql.Date 这样的重载在按名字输出的统计里也不会合并
+ * <p>
+ * 分配 id 是低频操作，直接加锁；槽位数组按两倍扩容，通过 volatile 写发布给读线程。
+ * 按名字查 id 的索引在第一次按名字查询时才补建，只补新分配的槽位。
+ */
+public class MethodIdentityRegistry {
+
+    private final Map<Method, Integer> idsByMethod = new ConcurrentHashMap<>();
+    private volatile MethodCallMetrics[] slots = new MethodCallMetrics[16];
+    private volatile int size;
+    // 方法名 -> id，只包含前 indexedByName 个槽位
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private volatile int indexedByName;
+
+    public int idOf(Method method) {
+        Integer id = idsByMethod.get(method);
+        return id != null ? id : assign(method);
+    }
+
+    /**
+     * @param methodName Class#method(params) 形式的方法名
+     * @return 对应的 id，没有登记过时返回 -1
+     */
+    public int idOf(String methodName) {
+        Integer id = idsByName.get(methodName);
+        if (id == null && indexedByName < size) {
+            id = indexNames(methodName);
+        }
+        return id != null ? id : -1;
+    }
+
+    public MethodCallMetrics get(int id) {
+        return slots[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 已分配的所有槽位（按 id 顺序），只包一层视图，不复制槽位
+     */
+    public Collection<MethodCallMetrics> all() {
+        int currentSize = size;
+        return Arrays.asList(slots).subList(0, currentSize);
+    }
+
+    private synchronized int assign(Method method) {
+        Integer existing = idsByMethod.get(method);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size;
+        MethodCallMetrics[] current = slots;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        current[id] = new MethodCallMetrics(id, () -> describe(method));
+        // 先发布数组和 size，再把 id 放进 map，拿到 id 的线程一定能看到对应的槽位
+        slots = current;
+        size = id + 1;
+        idsByMethod.put(method, id);
+        return id;
+    }
+
+    private synchronized Integer indexNames(String methodName) {
+        int currentSize = size;
+        MethodCallMetrics[] current = slots;
+        for (int i = indexedByName; i < currentSize; i++) {
+            idsByName.put(current[i].getMethodName(), i);
+        }
+        indexedByName = currentSize;
+        return idsByName.get(methodName);
+    }
+
+    /**
+     * 比如：com.fei.aop.count_method_call_count.DemoService#sayHello(java.lang.String)
+     */
+    static String describe(Method method) {
+        StringBuilder sb = new StringBuilder(method.getDeclaringClass().getName())
+                .append('#').append(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(parameterTypes[i].getTypeName());
+        }
+        return sb.append(')').toString();
+    }
+}
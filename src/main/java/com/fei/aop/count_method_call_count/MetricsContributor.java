@@ -0,0 +1,13 @@
+package com.fei.aop.count_method_call_count;
+
+import java.io.IOException;
+
+/**
+ * 往 /metrics 里追加指标的扩展点：容器里实现了这个接口的 Bean，会在每次抓取时被 OpenMetricsExporter 依次调用
+ * <p>
+ * 实现类直接往 Sink 里写，和方法调用统计一样不经过中间对象；指标名不要和别的贡献者重复。
+ */
+public interface MetricsContributor {
+
+    void writeMetrics(OpenMetricsExporter.Sink sink) throws IOException;
+}
@@ -0,0 +1,281 @@
+// OpenMetricsExporter.java
+package com.fei.aop.count_method_call_count;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 把方法调用统计以 OpenMetrics 文本格式（Prometheus 可直接抓取）写到输出流
+ * <p>
+ * 和 /stats 返回 JSON 的区别：
+ * 1. 不构造中间 Map，也不拼接字符串，直接遍历统计槽位，把字节写进一个复用的缓冲区，满了就刷到输出流
+ * 2. 数字（次数、纳秒转秒）都是手工按位写出的，不走 String.valueOf / String.format
+ * 3. 缓冲区来自一个很小的池子，抓取结束后还回去；所以就算跟踪了几千个方法，每次抓取的分配也只有几个小对象
+ * <p>
+ * 其他模块的指标通过 MetricsContributor 追加进来。
+ */
+@Component
+public class OpenMetricsExporter {
+
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final double[] QUANTILES = {50, 90, 99, 99.9};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final MethodCallCounterService counterService;
+    private final List<MetricsContributor> contributors;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final BlockingQueue<byte[]> bufferPool = new ArrayBlockingQueue<>(4);
+
+    public OpenMetricsExporter(MethodCallCounterService counterService, List<MetricsContributor> contributors) {
+        this.counterService = counterService;
+        this.contributors = contributors;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        writeTo(out, counterService.getAllMetrics());
+    }
+
+    void writeTo(OutputStream out, Collection<MethodCallMetrics> allMetrics) throws IOException {
+        byte[] buffer = bufferPool.poll();
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+        try {
+            Sink sink = new Sink(out, buffer);
+
+            sink.ascii("# TYPE method_calls counter\n");
+            sink.ascii("# HELP method_calls Invocations of @MethodCallCount methods.\n");
+            for (MethodCallMetrics metrics : allMetrics) {
+                sink.ascii("method_calls_total{method=\"").labelValue(metrics.getMethodName()).ascii("\"} ");
+                sink.decimal(metrics.getCallCount()).newLine();
+            }
+
+            sink.ascii("# TYPE method_call_duration_seconds summary\n");
+            sink.ascii("# UNIT method_call_duration_seconds seconds\n");
+            sink.ascii("# HELP method_call_duration_seconds Duration of @MethodCallCount methods.\n");
+            long[] values = new long[QUANTILES.length];
+            for (MethodCallMetrics metrics : allMetrics) {
+                long count = metrics.latencyPercentiles(QUANTILES, values);
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    sink.ascii("method_call_duration_seconds{method=\"").labelValue(metrics.getMethodName())
+                            .ascii("\",quantile=\"").ascii(QUANTILE_LABELS[i]).ascii("\"} ");
+                    sink.nanosAsSeconds(values[i]).newLine();
+                }
+                sink.ascii("method_call_duration_seconds_sum{method=\"").labelValue(metrics.getMethodName()).ascii("\"} ");
+                sink.nanosAsSeconds(metrics.getLatencyTotalNanos()).newLine();
+                sink.ascii("method_call_duration_seconds_count{method=\"").labelValue(metrics.getMethodName()).ascii("\"} ");
+                sink.decimal(count).newLine();
+            }
+
+            for (MetricsContributor contributor : contributors) {
+                contributor.writeMetrics(sink);
+            }
+
+            // JVM 线程数，用来观察连接数和线程数的关系（比如 ChatStreamLoadTest）
+            sink.gauge("jvm_threads_live", null, threadMXBean.getThreadCount());
+
+            sink.ascii("# EOF\n");
+            sink.flush();
+        } finally {
+            bufferPool.offer(buffer);
+        }
+    }
+
+    /**
+     * 在复用的 byte[] 上做编码，写满就刷到底层输出流
+     */
+    public static final class Sink {
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int position;
+
+        Sink(OutputStream out, byte[] buffer) {
+            this.out = out;
+            this.buffer = buffer;
+        }
+
+        /**
+         * 不带标签的 gauge，help 可以为 null
+         */
+        public Sink gauge(String name, String help, long value) throws IOException {
+            header(name, "gauge", null, help);
+            return ascii(name).put(' ').decimal(value).newLine();
+        }
+
+        /**
+         * 不带标签的 counter，name 不含 _total 后缀
+         */
+        public Sink counter(String name, String help, long value) throws IOException {
+            header(name, "counter", null, help);
+            return ascii(name).ascii("_total ").decimal(value).newLine();
+        }
+
+        /**
+         * 不带标签的耗时 summary（单位秒），分位数和方法耗时一样是 0.5 / 0.9 / 0.99 / 0.999
+         */
+        public Sink durationSummary(String name, String help, LatencyHistogram histogram) throws IOException {
+            header(name, "summary", "seconds", help);
+            long[] values = new long[QUANTILES.length];
+            long count = histogram.percentiles(QUANTILES, values);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                ascii(name).ascii("{quantile=\"").ascii(QUANTILE_LABELS[i]).ascii("\"} ").nanosAsSeconds(values[i]).newLine();
+            }
+            ascii(name).ascii("_sum ").nanosAsSeconds(histogram.getTotalNanos()).newLine();
+            return ascii(name).ascii("_count ").decimal(count).newLine();
+        }
+
+        /**
+         * 带一个标签的耗时 summary 的头部；之后每个标签值调用一次 durationSummary(name, labelName, labelValue, histogram)
+         */
+        public Sink durationSummaryHeader(String name, String help) throws IOException {
+            header(name, "summary", "seconds", help);
+            return this;
+        }
+
+        /**
+         * 带一个标签的耗时 summary 的一组样本，先调用 durationSummaryHeader 写头部
+         */
+        public Sink durationSummary(String name, String labelName, String labelValue, LatencyHistogram histogram)
+                throws IOException {
+            long[] values = new long[QUANTILES.length];
+            long count = histogram.percentiles(QUANTILES, values);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                ascii(name).put('{').ascii(labelName).ascii("=\"").labelValue(labelValue)
+                        .ascii("\",quantile=\"").ascii(QUANTILE_LABELS[i]).ascii("\"} ").nanosAsSeconds(values[i]).newLine();
+            }
+            ascii(name).ascii("_sum{").ascii(labelName).ascii("=\"").labelValue(labelValue).ascii("\"} ")
+                    .nanosAsSeconds(histogram.getTotalNanos()).newLine();
+            return ascii(name).ascii("_count{").ascii(labelName).ascii("=\"").labelValue(labelValue).ascii("\"} ")
+                    .decimal(count).newLine();
+        }
+
+        /**
+         * 带一个标签的 counter 的头部；之后每个标签值调用一次 counter(name, labelName, labelValue, value)
+         */
+        public Sink counterHeader(String name, String help) throws IOException {
+            header(name, "counter", null, help);
+            return this;
+        }
+
+        /**
+         * 带一个标签的 counter 的一个样本，name 不含 _total 后缀
+         */
+        public Sink counter(String name, String labelName, String labelValue, long value) throws IOException {
+            return ascii(name).ascii("_total{").ascii(labelName).ascii("=\"").labelValue(labelValue).ascii("\"} ")
+                    .decimal(value).newLine();
+        }
+
+        private void header(String name, String type, String unit, String help) throws IOException {
+            ascii("# TYPE ").ascii(name).put(' ').ascii(type).newLine();
+            if (unit != null) {
+                ascii("# UNIT ").ascii(name).put(' ').ascii(unit).newLine();
+            }
+            if (help != null) {
+                ascii("# HELP ").ascii(name).put(' ').ascii(help).newLine();
+            }
+        }
+
+        public Sink ascii(String s) throws IOException {
+            for (int i = 0, n = s.length(); i < n; i++) {
+                put((byte) s.charAt(i));
+            }
+            return this;
+        }
+
+        /**
+         * 标签值按 OpenMetrics 规则转义 \ " 换行，非 ASCII 字符按 UTF-8 编码
+         */
+        public Sink labelValue(String s) throws IOException {
+            for (int i = 0, n = s.length(); i < n; i++) {
+                char c = s.charAt(i);
+                if (c == '\\' || c == '"') {
+                    put((byte) '\\');
+                    put((byte) c);
+                } else if (c == '\n') {
+                    put((byte) '\\');
+                    put((byte) 'n');
+                } else if (c < 0x80) {
+                    put((byte) c);
+                } else if (c < 0x800) {
+                    put((byte) (0xC0 | (c >> 6)));
+                    put((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    put((byte) (0xF0 | (cp >> 18)));
+                    put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    put((byte) (0x80 | (cp & 0x3F)));
+                } else {
+                    put((byte) (0xE0 | (c >> 12)));
+                    put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+            return this;
+        }
+
+        public Sink decimal(long value) throws IOException {
+            if (value < 0) {
+                put((byte) '-');
+                value = -value;
+            }
+            long divisor = 1;
+            while (value / divisor >= 10) {
+                divisor *= 10;
+            }
+            for (; divisor > 0; divisor /= 10) {
+                put((byte) ('0' + (value / divisor) % 10));
+            }
+            return this;
+        }
+
+        /**
+         * 纳秒按 9 位小数的秒写出，比如 1234567 -> 0.001234567
+         */
+        public Sink nanosAsSeconds(long nanos) throws IOException {
+            decimal(nanos / 1_000_000_000L);
+            put((byte) '.');
+            long fraction = nanos % 1_000_000_000L;
+            for (long divisor = 100_000_000L; divisor > 0; divisor /= 10) {
+                put((byte) ('0' + (fraction / divisor) % 10));
+            }
+            return this;
+        }
+
+        public Sink newLine() throws IOException {
+            put((byte) '\n');
+            return this;
+        }
+
+        void flush() throws IOException {
+            if (position > 0) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+            out.flush();
+        }
+
+        private Sink put(char c) throws IOException {
+            put((byte) c);
+            return this;
+        }
+
+        private void put(byte b) throws IOException {
+            if (position == buffer.length) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+            buffer[position++] = b;
+        }
+    }
+}
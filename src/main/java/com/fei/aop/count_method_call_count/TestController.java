@@ -3,9 +3,12 @@ package com.fei.aop.count_method_call_count;
 
 import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.Map;
 
 @RestController
@@ -14,6 +17,7 @@ public class TestController {
 
     private final DemoService demoService;
     private final MethodCallCounterService counterService;
+    private final OpenMetricsExporter metricsExporter;
 
     @GetMapping("/sayHello")
     public String sayHello(@RequestParam String name) {
@@ -25,8 +29,36 @@ public class TestController {
         return demoService.doWork();
     }
 
+    /**
+     * 每个方法的累计调用次数，以及最近 1/5/15 分钟的平均每秒调用次数
+     */
     @GetMapping("/stats")
-    public Map<String, Integer> stats() {
-        return counterService.getAllMethodCallCounts();
+    public Map<String, MethodCallStats> stats() {
+        return counterService.getAllMethodCallStats();
     }
-}
\ No newline at end of file
+
+    /**
+     * 快照并重置：返回每个方法自上一次快照以来的调用次数，给定时抓取的采集端用
+     */
+    @PostMapping("/stats/snapshot")
+    public Map<String, Long> snapshot() {
+        return counterService.snapshotAndReset();
+    }
+
+    /**
+     * 每个方法的耗时分布：调用次数、平均值、p50/p90/p99/p999、最大值（毫秒）
+     */
+    @GetMapping("/stats/latency")
+    public Map<String, LatencySnapshot> latency() {
+        return counterService.getAllLatencySnapshots();
+    }
+
+    /**
+     * OpenMetrics 文本格式，给 Prometheus 等采集端抓取；直接写响应输出流，不经过 JSON 序列化
+     */
+    @GetMapping("/metrics")
+    public void metrics(HttpServletResponse response) throws IOException {
+        response.setContentType(OpenMetricsExporter.CONTENT_TYPE);
+        metricsExporter.writeTo(response.getOutputStream());
+    }
+}
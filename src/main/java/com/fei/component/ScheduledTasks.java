@@ -1,5 +1,7 @@
 package com.fei.component;
 
+import com.fei.scheduling.JobLease;
+import com.fei.scheduling.ScheduledJob;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -8,7 +10,12 @@ public class ScheduledTasks {
 
     // fixedRate：每隔5秒执行一次，无论上一次任务是否完成，都会按照固定的时间间隔（本例为5秒）启动新的任务。
     // 也就是说，如果任务执行时间超过5秒，可能会出现任务重叠并发执行的情况。
+    // 【补充】直接跑在 ThreadPoolTaskScheduler 上时其实不会重叠：ScheduledThreadPoolExecutor 会把下一次推迟到上一次结束后立刻开始，
+    // 代价是这段时间一直占着共享的调度线程，后面的执行全都晚了。@ScheduledJob(poolSize = 1) 把它放到独立线程池，
+    // 调度线程只负责派发；上一次还没结束时这一次直接跳过（maxConcurrent 默认 1），跳过和超时次数见 GET /scheduling/jobs
+    // 部署多个节点时，这几个任务都只在持有租约的节点上执行（clusterLease），见 JobLeaseManager
     @Scheduled(fixedRate = 5000)
+    @ScheduledJob(poolSize = 1, clusterLease = true)
     public void performTask() {
         System.out.println("Regular task performed at " + System.currentTimeMillis());
     }
@@ -16,13 +23,17 @@ public class ScheduledTasks {
     // fixedDelay：在上一个任务执行完成后，等待5秒再启动下一次任务。
     // 也就是说，任务之间的间隔是“上一次任务结束”到“下一次任务开始”之间的时间，任务不会重叠执行。
     @Scheduled(fixedDelay = 5000)
+    @ScheduledJob(clusterLease = true)
     public void performDelayedTask() {
         System.out.println("Delayed task performed at " + System.currentTimeMillis());
     }
 
-    // 每天晚上12点执行
+    // 每天晚上12点执行；N 个节点时原来会执行 N 次，现在只在一个节点上执行，写库时可以用 fencing token 防护（见 JobLease）
     @Scheduled(cron = "0 0 0 * * ?")
+    @ScheduledJob(clusterLease = true)
     public void performTaskUsingCron() {
-        System.out.println("Scheduled task using cron expression at " + System.currentTimeMillis());
+        JobLease lease = JobLease.current();
+        System.out.println("Scheduled task using cron expression at " + System.currentTimeMillis()
+                + (lease == null ? "" : ", fencing token " + lease.getFencingToken()));
     }
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package com.fei.config;
 
+import com.fei.scheduling.ScheduledJobMonitor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -8,6 +11,11 @@ import org.springframework.scheduling.annotation.SchedulingConfigurer;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
 @Configuration
 @EnableScheduling
 public class SchedulerConfig implements SchedulingConfigurer {
@@ -23,20 +31,39 @@ public class SchedulerConfig implements SchedulingConfigurer {
     @Autowired
     private ThreadPoolTaskScheduler taskScheduler;
 
+    // scheduling.jobs.enabled=false 时没有，任务直接跑在 taskScheduler 上
+    @Autowired
+    private ObjectProvider<ScheduledJobMonitor> jobMonitor;
+
     // 定义线程池给@Scheduled 的 demo 用的
     @Bean
-    public ThreadPoolTaskScheduler taskScheduler() {
-        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${" + VirtualThreads.ENABLED_PROPERTY + ":false}") boolean virtualThreads) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler() {
+            @Override
+            protected ScheduledExecutorService createExecutor(int poolSize, ThreadFactory threadFactory,
+                                                              RejectedExecutionHandler rejectedExecutionHandler) {
+                ScheduledExecutorService executor = super.createExecutor(poolSize, threadFactory, rejectedExecutionHandler);
+                // 停机时只等正在执行的任务，还没到点的 cron 触发（一次性的延迟任务）直接丢掉：
+                // 默认会留在队列里，线程池要等到半夜那次 cron 才能终止，启动失败时进程也退不出去
+                ((ScheduledThreadPoolExecutor) executor).setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+                return executor;
+            }
+        };
         scheduler.setPoolSize(10); // 设置线程池大小
         scheduler.setThreadNamePrefix("scheduled-task-"); // 设置线程名前缀
+        if (virtualThreads) {
+            // 开启虚拟线程时，定时任务跑在虚拟线程上，任务里阻塞（JDBC、sleep）不会占住平台线程
+            scheduler.setThreadFactory(VirtualThreads.factory("scheduled-task-"));
+        }
         scheduler.setWaitForTasksToCompleteOnShutdown(true); // 优雅停机
         scheduler.setAwaitTerminationSeconds(60); // 等待终止时间
         return scheduler;
     }
 
-    // 启用定时任务并指定线程池
+    // 启用定时任务并指定线程池；经过 ScheduledJobMonitor 包装后，每个任务的执行都有统计，并按 @ScheduledJob 控制并发
     @Override
     public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
-        taskRegistrar.setTaskScheduler(taskScheduler);
+        ScheduledJobMonitor monitor = jobMonitor.getIfAvailable();
+        taskRegistrar.setTaskScheduler(monitor == null ? taskScheduler : monitor.instrument(taskScheduler));
     }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.fei.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * spring.threads.virtual.enabled=true 时（需要 JDK 21），把阻塞型的工作挪到虚拟线程上：
+ * 1. Tomcat 处理请求的线程池换成每个请求一个虚拟线程，/account/transfer 这类 JDBC 调用阻塞时不再占住平台线程
+ * 2. MVC 异步请求（/chat/blocking 的 StreamingResponseBody）也跑在虚拟线程上，默认是每个流一个 MvcAsync 平台线程
+ * 3. @Scheduled 和 /chat1 的 SSE 生产者见 SchedulerConfig、SseBroadcastHub
+ * <p>
+ * 开关名沿用 Spring Boot 3.2 的 spring.threads.virtual.enabled，以后升级时配置不用改。
+ * <p>
+ * Tomcat 和 MVC 都不会关闭外部传进去的 executor，所以由这里在容器关闭时 shutdown；
+ * 这时 Web 服务器已经在 Lifecycle 停止阶段停掉了，不会再有新请求进来。
+ * 不注册成 Executor 类型的 Bean，免得影响 Spring Boot 按“有没有 Executor Bean”做的自动配置。
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = VirtualThreads.ENABLED_PROPERTY, havingValue = "true")
+public class VirtualThreadConfig implements WebMvcConfigurer, DisposableBean {
+
+    private final ExecutorService tomcatExecutor = VirtualThreads.newPerTaskExecutor("tomcat-handler-");
+    private final ExecutorService mvcAsyncExecutor = VirtualThreads.newPerTaskExecutor("mvc-async-");
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(tomcatExecutor);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(mvcAsyncExecutor));
+    }
+
+    /**
+     * 只 shutdown 不等待：还没结束的长连接（比如 /chat/blocking）不会拖住停机，虚拟线程也不会阻止 JVM 退出
+     */
+    @Override
+    public void destroy() {
+        tomcatExecutor.shutdown();
+        mvcAsyncExecutor.shutdown();
+    }
+}
@@ -0,0 +1,67 @@
+package com.fei.config;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程（JDK 21）的反射封装
+ * <p>
+ * 项目还是按 Java 8 编译（Spring Boot 2.3 的 ASM 读不了 Java 21 的 class 文件），所以不能直接写 Thread.ofVirtual()，
+ * 这里用反射在运行时拿虚拟线程工厂。运行在 JDK 21 以下时，开启 spring.threads.virtual.enabled 会直接启动失败，
+ * 而不是悄悄退回平台线程。
+ */
+public final class VirtualThreads {
+
+    public static final String ENABLED_PROPERTY = "spring.threads.virtual.enabled";
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return 虚拟线程工厂，线程名为 prefix + 序号
+     */
+    public static ThreadFactory factory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(ENABLED_PROPERTY + "=true 需要运行在 JDK 21 及以上，当前是 "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+
+    /**
+     * @return 按开关选择虚拟线程或者普通的平台线程
+     */
+    public static ThreadFactory factory(boolean virtual, String prefix) {
+        return virtual ? factory(prefix) : new CustomizableThreadFactory(prefix);
+    }
+
+    /**
+     * 每个任务一个新的虚拟线程，不做池化（虚拟线程本身很便宜，池化反而限制了并发）
+     */
+    public static ExecutorService newPerTaskExecutor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        try {
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) method.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("当前 JDK 不支持 Executors.newThreadPerTaskExecutor", e);
+        }
+    }
+}
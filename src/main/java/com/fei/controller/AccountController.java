@@ -1,29 +1,133 @@
 package com.fei.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fei.listenerdemo.transactional_listener.AccountBalanceCache;
+import com.fei.listenerdemo.transactional_listener.AccountExportProperties;
+import com.fei.listenerdemo.transactional_listener.AccountExportService;
 import com.fei.listenerdemo.transactional_listener.AccountService;
+import com.fei.listenerdemo.transactional_listener.BalanceCacheStats;
+import com.fei.listenerdemo.transactional_listener.GroupCommitTransferQueue;
+import com.fei.listenerdemo.transactional_listener.IdempotencyKeyConflictException;
+import com.fei.listenerdemo.transactional_listener.TransferBatchResult;
+import com.fei.listenerdemo.transactional_listener.TransferRejectedException;
+import com.fei.listenerdemo.transactional_listener.TransferIdempotencyStore;
+import com.fei.listenerdemo.transactional_listener.TransferRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 账户控制器，提供接口测试事务事件监听
  */
+@Slf4j
 @RestController
 public class AccountController {
 
+    // 背压拒绝时建议客户端多久之后重试（秒）
+    private static final String RETRY_AFTER_SECONDS = "1";
+
     private final AccountService accountService;
+    private final AccountBalanceCache balanceCache;
+    private final TransferIdempotencyStore idempotencyStore;
+    private final AccountExportService exportService;
+    private final AccountExportProperties exportProperties;
+    private final ObjectMapper objectMapper;
+    // 只有开启 account.group-commit.enabled 时才有
+    private final GroupCommitTransferQueue groupCommitQueue;
 
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService, AccountBalanceCache balanceCache,
+                             TransferIdempotencyStore idempotencyStore, AccountExportService exportService,
+                             AccountExportProperties exportProperties, ObjectMapper objectMapper,
+                             ObjectProvider<GroupCommitTransferQueue> groupCommitQueue) {
         this.accountService = accountService;
+        this.balanceCache = balanceCache;
+        this.idempotencyStore = idempotencyStore;
+        this.exportService = exportService;
+        this.exportProperties = exportProperties;
+        this.objectMapper = objectMapper;
+        this.groupCommitQueue = groupCommitQueue.getIfAvailable();
     }
 
     /**
      * 正常转账（事务提交）
+     * <p>
+     * 开启组提交时，转账进队列和别的转账合并提交，请求线程不等待（MVC 异步），所在批次提交后才返回。
+     * <p>
+     * 带 Idempotency-Key 请求头时，同一个键的重试只执行一次转账：已经有结果的直接返回原结果，
+     * 第一次还在执行的等它的结果，见 TransferIdempotencyStore。
      */
     @GetMapping("/account/transfer")
-    public String transfer(@RequestParam String from, @RequestParam String to, @RequestParam double amount) {
-        accountService.transfer(from, to, amount);
-        return "转账成功";
+    public CompletableFuture<String> transfer(@RequestParam String from, @RequestParam String to, @RequestParam double amount,
+                                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            return doTransfer(from, to, amount);
+        }
+        try {
+            return idempotencyStore.execute(idempotencyKey, from + " -> " + to + ", 金额: " + amount,
+                    () -> doTransfer(from, to, amount));
+        } catch (IdempotencyKeyConflictException e) {
+            return CompletableFuture.completedFuture("转账失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 背压：幂等键去重表的段满了、组提交队列满了或者已经关闭时，返回 503 和 Retry-After，让客户端稍后重试，
+     * 而不是当成服务端错误（500）；组提交的 future 以这个异常完成时也走这里（MVC 会拆掉 CompletionException）
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> rejected(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body("转账被拒绝，请稍后重试: " + e.getMessage());
+    }
+
+    private CompletableFuture<String> doTransfer(String from, String to, double amount) {
+        if (groupCommitQueue != null) {
+            return groupCommitQueue.submit(from, to, amount)
+                    .thenApply(ignored -> "转账成功")
+                    .exceptionally(e -> {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        if (cause instanceof TransferRejectedException) {
+                            return "转账失败: " + cause.getMessage();
+                        }
+                        // 事务没有提交，不当成结果记住，带幂等键的重试可以重新执行
+                        throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(cause);
+                    });
+        }
+        try {
+            accountService.transfer(from, to, amount);
+        } catch (TransferRejectedException e) {
+            return CompletableFuture.completedFuture("转账失败: " + e.getMessage());
+        }
+        return CompletableFuture.completedFuture("转账成功");
     }
 
     /**
@@ -38,4 +142,104 @@ public class AccountController {
         }
         return "不可能到这里";
     }
-} 
\ No newline at end of file
+
+    /**
+     * 批量转账，请求体是 JSON 数组：[{"from":"Alice","to":"Bob","amount":1}, ...]
+     */
+    @PostMapping(value = "/account/transfers", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public TransferBatchResult transfers(@RequestBody List<TransferRequest> transfers) {
+        return accountService.transferBatch(transfers.iterator());
+    }
+
+    /**
+     * 批量转账，请求体是 NDJSON（每行一笔转账），边读边按分块提交，几万笔的结算文件也不用先整个读进内存
+     */
+    @PostMapping(value = "/account/transfers", consumes = "application/x-ndjson")
+    public TransferBatchResult transfersStream(InputStream body) throws IOException {
+        try (MappingIterator<TransferRequest> transfers = objectMapper.readerFor(TransferRequest.class).readValues(body)) {
+            return accountService.transferBatch(transfers);
+        }
+    }
+
+    /**
+     * 查余额（走读穿缓存，转账提交后缓存立即失效），账户不存在时返回 404
+     */
+    @GetMapping("/account/balance")
+    public ResponseEntity<BigDecimal> balance(@RequestParam String name) {
+        BigDecimal balance = balanceCache.getBalance(name);
+        return balance == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(balance);
+    }
+
+    /**
+     * 余额缓存的命中、未命中、淘汰、失效统计
+     */
+    @GetMapping("/account/balance/cache-stats")
+    public BalanceCacheStats balanceCacheStats() {
+        return balanceCache.getStats();
+    }
+
+    /**
+     * 导出所有账户余额，format 为 csv（默认）或 ndjson
+     * <p>
+     * 和 /chat/blocking 一样用 StreamingResponseBody 边查边写，查询结果不会整个读进内存。
+     * 请求头带 Accept-Encoding: gzip 时压缩输出。
+     * 行按 id 升序输出，连接中途断开时，用收到的最后一个完整行的 id 作为 afterId 重新请求，从下一行接着导出。
+     * <p>
+     * 访问方式：
+     * GET /account/export?format=ndjson&afterId=0
+     */
+    @GetMapping("/account/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "csv") String format,
+                                                        @RequestParam(defaultValue = "0") long afterId,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                        HttpServletRequest request) {
+        AccountExportService.Format exportFormat;
+        try {
+            exportFormat = AccountExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+        extendAsyncTimeout(request, exportProperties.getTimeoutMillis());
+
+        StreamingResponseBody body = out -> {
+            try {
+                if (gzip) {
+                    GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192);
+                    exportService.export(gzipOut, exportFormat, afterId);
+                    gzipOut.finish();
+                } else {
+                    exportService.export(out, exportFormat, afterId);
+                }
+            } catch (IOException e) {
+                // 写不出去只可能是客户端断开了（数据库错误是 DataAccessException），游标和连接已经释放，
+                // 不再往上抛，否则 Tomcat 还会往这个断开的连接上写错误页
+                log.info("账户导出中断（afterId={}）: {}", afterId, e.toString());
+            }
+        };
+        String extension = exportFormat == AccountExportService.Format.CSV ? "csv" : "ndjson";
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, exportFormat == AccountExportService.Format.CSV
+                        ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"accounts." + extension + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * StreamingResponseBody 默认受 MVC 异步请求超时（没配置时是 Tomcat 的 30 秒）限制，超时后响应被截断。
+     * 只放宽导出这一个请求：在异步处理开始前把超时改掉，不影响其他接口
+     */
+    private static void extendAsyncTimeout(HttpServletRequest request, long timeoutMillis) {
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(AccountController.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest asyncRequest, Callable<T> task) {
+                        ((AsyncWebRequest) asyncRequest).setTimeout(timeoutMillis);
+                    }
+                });
+    }
+}
@@ -0,0 +1,52 @@
+package com.fei.controller;
+
+import com.fei.scheduling.JobLeaseManager;
+import com.fei.scheduling.ScheduledJobMonitor;
+import com.fei.scheduling.ScheduledJobStats;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 定时任务的执行统计和集群租约
+ */
+@RestController
+public class ScheduledJobController {
+
+    // scheduling.jobs.enabled=false 时没有
+    private final ScheduledJobMonitor monitor;
+    // scheduling.lease.enabled=false 时没有
+    private final JobLeaseManager leases;
+
+    public ScheduledJobController(ObjectProvider<ScheduledJobMonitor> monitor, ObjectProvider<JobLeaseManager> leases) {
+        this.monitor = monitor.getIfAvailable();
+        this.leases = leases.getIfAvailable();
+    }
+
+    /**
+     * 每个定时任务的执行次数、失败/跳过/超时次数、耗时和启动延迟分布；未开启时返回 404
+     */
+    @GetMapping("/scheduling/jobs")
+    public ResponseEntity<List<ScheduledJobStats>> jobs() {
+        return monitor == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(monitor.getStats());
+    }
+
+    /**
+     * 本节点的标识和当前持有的集群租约（租约的键 -> fencing token）；未开启时返回 404
+     */
+    @GetMapping("/scheduling/leases")
+    public ResponseEntity<Map<String, Object>> leases() {
+        if (leases == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("nodeId", leases.getNodeId());
+        body.put("held", leases.getHeldLeases());
+        return ResponseEntity.ok(body);
+    }
+}
@@ -0,0 +1,31 @@
+package com.fei.controller;
+
+import com.fei.listenerdemo.startup.StartupProfiler;
+import com.fei.listenerdemo.startup.StartupReport;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 启动耗时报告，内容和 startup.profiler.report-file 写出的 JSON 文件相同
+ */
+@RestController
+public class StartupController {
+
+    // 由 MyApplicationStartingListener 注册，startup.profiler.enabled=false 时没有
+    private final StartupProfiler profiler;
+
+    public StartupController(ObjectProvider<StartupProfiler> profiler) {
+        this.profiler = profiler.getIfAvailable();
+    }
+
+    /**
+     * 各启动阶段的耗时，以及按自身耗时从大到小排列的 bean 创建耗时；未开启统计时返回 404
+     */
+    @GetMapping("/startup/profile")
+    public ResponseEntity<StartupReport> profile() {
+        StartupReport report = profiler == null ? null : profiler.getReport();
+        return report == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(report);
+    }
+}
@@ -0,0 +1,42 @@
+package com.fei.controller;
+
+import com.fei.listenerdemo.warmup.WarmupCoordinator;
+import com.fei.listenerdemo.warmup.WarmupReport;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 就绪探针和预热报告
+ */
+@RestController
+public class WarmupController {
+
+    private final WarmupCoordinator coordinator;
+    private final ApplicationAvailability availability;
+
+    public WarmupController(WarmupCoordinator coordinator, ApplicationAvailability availability) {
+        this.coordinator = coordinator;
+        this.availability = availability;
+    }
+
+    /**
+     * 就绪探针：Spring Boot 已经启动完成（ApplicationRunner 等都执行完），并且关键预热任务都已结束时返回 200，否则 503
+     */
+    @GetMapping("/ready")
+    public ResponseEntity<String> ready() {
+        boolean ready = availability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC && coordinator.isReady();
+        return ready ? ResponseEntity.ok("READY") : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("NOT_READY");
+    }
+
+    /**
+     * 每个预热任务的状态、开始时间、耗时、执行线程和失败原因
+     */
+    @GetMapping("/warmup/report")
+    public WarmupReport report() {
+        return coordinator.getReport();
+    }
+}
@@ -0,0 +1,55 @@
+package com.fei.controller.stream;
+
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * /chat 的异步分块推送：请求线程只负责 startAsync 然后立刻返回，后续的分块由共享定时器产生，
+ * 通过 WriteListener 非阻塞写出。连接数再多，占用的也只是 chat.stream.threads 个定时线程。
+ */
+@Component
+public class ChatChunkStreamer {
+
+    private final ChatStreamProperties properties;
+    private ScheduledThreadPoolExecutor timer;
+    // 每个连接推送的内容都一样，启动时编码一次，所有连接共享
+    private byte[][] chunks;
+
+    public ChatChunkStreamer(ChatStreamProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        timer = new ScheduledThreadPoolExecutor(properties.getThreads(), new CustomizableThreadFactory("chat-stream-"));
+        // 连接结束时会取消定时任务，取消后立刻从队列里移除，避免大量已取消的任务堆积
+        timer.setRemoveOnCancelPolicy(true);
+        chunks = new byte[properties.getChunkCount()][];
+        for (int i = 0; i < chunks.length; i++) {
+            // 和原来的格式保持一致：每条消息以换行符结尾
+            chunks[i] = ("data chunk " + i + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    public void stream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(properties.getTimeoutMillis());
+        new NonBlockingChunkStream(asyncContext, response.getOutputStream(), properties, chunks).start(timer);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
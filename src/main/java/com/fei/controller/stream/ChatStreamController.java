@@ -5,12 +5,15 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.Executors;
 
 /**
  * 聊天流控制器 - 基于Spring MVC的服务器发送事件(SSE)实现
@@ -76,6 +79,31 @@ import java.util.concurrent.Executors;
 @RestController
 public class ChatStreamController {
 
+    private final SseBroadcastHub broadcastHub;
+    private final ChatChunkStreamer chunkStreamer;
+
+    public ChatStreamController(SseBroadcastHub broadcastHub, ChatChunkStreamer chunkStreamer) {
+        this.broadcastHub = broadcastHub;
+        this.chunkStreamer = chunkStreamer;
+    }
+
+    /**
+     * 聊天流接口 - 非阻塞版本
+     * <p>
+     * 推送的内容和 /chat/blocking 完全一样（每隔500毫秒一条，共10条），区别在于线程占用：
+     * 1. 请求线程调用 startAsync 后立刻归还给 Tomcat
+     * 2. 分块由 ChatChunkStreamer 的共享定时器产生，两个分块之间没有任何线程在等
+     * 3. 通过 WriteListener 非阻塞写出，客户端读得慢也不会卡住线程
+     * 4. 长时间没有数据时发送心跳注释，写失败即认为客户端已断开，立即取消定时任务
+     * <p>
+     * 访问方式：
+     * GET /chat
+     */
+    @GetMapping("/chat")
+    public void chat(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        chunkStreamer.stream(request, response);
+    }
+
     /**
      * 聊天流接口 - 模拟实时聊天消息推送
      * <p>
@@ -83,7 +111,9 @@ public class ChatStreamController {
      * 服务器会每隔500毫秒向客户端推送一条消息，总共推送10条消息。
      * <p>
      * 访问方式：
-     * GET /chat
+     * GET /chat/blocking
+     * <p>
+     * 保留这个阻塞版本是为了和 /chat 做对比：它会占用一个 Tomcat 工作线程直到 10 条消息全部推完。
      * <p>
      * 响应格式：
      * Content-Type: text/event-stream
@@ -107,8 +137,8 @@ public class ChatStreamController {
      * 
      * @return ResponseEntity<StreamingResponseBody> 包含流式响应体的HTTP响应
      */
-    @GetMapping("/chat")
-    public ResponseEntity<StreamingResponseBody> chat() {
+    @GetMapping("/chat/blocking")
+    public ResponseEntity<StreamingResponseBody> chatBlocking() {
         // 创建流式响应体，定义数据写入逻辑
         StreamingResponseBody body = outputStream -> {
             // 模拟推送10条消息
@@ -147,23 +177,30 @@ public class ChatStreamController {
     Spring 为 SSE 提供了专门的支持：SseEmitter，其中的send()方法用于发送数据到客户端，complete()用于正常结束连接，而completeWithError()则是错误终止连接。
 
     这个方案可以做成异步，即通过线程池不断的向SseEmitter中send数据。
+
+    原来这里每个请求都 Executors.newSingleThreadExecutor()，连接一多线程数就跟着涨，而且这些线程池从来没有 shutdown。
+    现在交给 SseBroadcastHub：所有连接共用 chat.sse.threads 个线程，每个连接一个有界队列，连接结束自动摘除。
+
+    浏览器的 EventSource 断线后会自动重连，并在 Last-Event-ID 请求头里带上最后收到的 id，这里据此从事件日志续传。
+    请求头按字符串接收：代理或者别的客户端可能带上不是数字的 id，这时当作首次连接，不续传，也不返回 400。
      */
     @GetMapping("/chat1")
-    public SseEmitter sse() {
-        SseEmitter emitter = new SseEmitter(60_000L); // 设置超时时间
-
-        Executors.newSingleThreadExecutor().submit(() -> {
-            try {
-                for (int i = 0; i < 30; i++) {
-                    emitter.send("Message " + i);
-                    Thread.sleep(1000);
-                }
-                emitter.complete();
-            } catch (Exception ex) {
-                emitter.completeWithError(ex);
-            }
-        });
+    public SseEmitter sse(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return broadcastHub.subscribe(parseLastEventId(lastEventId));
+    }
 
-        return emitter;
+    /**
+     * @return 非负整数形式的 id；没有或者解析不了时为 null
+     */
+    private static Long parseLastEventId(String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            long id = Long.parseLong(header.trim());
+            return id < 0 ? null : id;
+        } catch (NumberFormatException ex) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,39 @@
+package com.fei.controller.stream;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * /chat 非阻塞分块推送的配置，对应 application.yml 中以 chat.stream 开头的属性
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.stream")
+public class ChatStreamProperties {
+
+    /**
+     * 驱动所有 /chat 连接的定时线程数，和连接数无关
+     */
+    private int threads = 1;
+
+    /**
+     * 每个连接推送多少个分块
+     */
+    private int chunkCount = 10;
+
+    /**
+     * 分块之间的间隔（毫秒）
+     */
+    private long chunkIntervalMillis = 500L;
+
+    /**
+     * 超过这么久没写过任何数据就发一条心跳注释（毫秒），顺便探测客户端是否已经断开
+     */
+    private long heartbeatIntervalMillis = 15_000L;
+
+    /**
+     * 异步请求超时时间（毫秒）
+     */
+    private long timeoutMillis = 60_000L;
+}
@@ -0,0 +1,176 @@
+package com.fei.controller.stream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个 /chat 连接的非阻塞推送状态
+ * <p>
+ * 基于 Servlet 3.1 的非阻塞 I/O：
+ * 1. 定时器到点了才生成一个分块，放进 pending 队列，然后尝试写出
+ * 2. 只有 out.isReady() 为 true 时才写；为 false 时就什么都不做，等容器回调 onWritePossible 再继续
+ * 3. 两个分块之间没有任何线程在等这个连接，原来的 Thread.sleep(500) 被定时器取代了
+ * <p>
+ * 定时器线程和容器线程（onWritePossible）都会来写，所以写路径用 synchronized 串行化；临界区里只有非阻塞操作。
+ */
+class NonBlockingChunkStream implements WriteListener, AsyncListener {
+
+    private static final byte[] HEARTBEAT = ": heartbeat\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream out;
+    private final ChatStreamProperties properties;
+    // 所有连接共享的、预先编码好的分块
+    private final byte[][] chunks;
+    private final Deque<byte[]> pending = new ArrayDeque<>();
+    private boolean awaitingWritePossible;
+    private boolean allChunksProduced;
+    private boolean closed;
+    private int nextChunk;
+    private long lastWriteNanos = System.nanoTime();
+    private ScheduledFuture<?> chunkTask;
+    private ScheduledFuture<?> heartbeatTask;
+
+    NonBlockingChunkStream(AsyncContext asyncContext, ServletOutputStream out, ChatStreamProperties properties,
+                           byte[][] chunks) {
+        this.asyncContext = asyncContext;
+        this.out = out;
+        this.properties = properties;
+        this.chunks = chunks;
+    }
+
+    synchronized void start(ScheduledExecutorService timer) {
+        asyncContext.addListener(this);
+        out.setWriteListener(this);
+        chunkTask = timer.scheduleAtFixedRate(this::produceChunk, 0,
+                properties.getChunkIntervalMillis(), TimeUnit.MILLISECONDS);
+        heartbeatTask = timer.scheduleAtFixedRate(this::heartbeat, properties.getHeartbeatIntervalMillis(),
+                properties.getHeartbeatIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void produceChunk() {
+        if (closed || allChunksProduced) {
+            return;
+        }
+        pending.add(chunks[nextChunk]);
+        if (++nextChunk == chunks.length) {
+            allChunksProduced = true;
+            chunkTask.cancel(false);
+        }
+        writePending();
+    }
+
+    private synchronized void heartbeat() {
+        long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastWriteNanos);
+        if (closed || idleMillis < properties.getHeartbeatIntervalMillis()) {
+            return;
+        }
+        // SSE 注释行，客户端会忽略；如果客户端已经断开，写的时候就会报错，从而及时释放连接
+        pending.add(HEARTBEAT);
+        writePending();
+    }
+
+    @Override
+    public synchronized void onWritePossible() {
+        awaitingWritePossible = false;
+        writePending();
+    }
+
+    private void writePending() {
+        if (closed || awaitingWritePossible) {
+            return;
+        }
+        try {
+            while (!pending.isEmpty()) {
+                if (!out.isReady()) {
+                    awaitingWritePossible = true;
+                    return;
+                }
+                out.write(pending.poll());
+                lastWriteNanos = System.nanoTime();
+            }
+            // 刷新缓冲区，确保数据立即发送到客户端；刷不完的部分由容器在可写时继续发送
+            if (!out.isReady()) {
+                awaitingWritePossible = true;
+                return;
+            }
+            out.flush();
+            if (!out.isReady()) {
+                awaitingWritePossible = true;
+                return;
+            }
+            if (allChunksProduced) {
+                finish();
+            }
+        } catch (IOException | IllegalStateException ex) {
+            // 客户端已经断开
+            finish();
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        finish();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    /**
+     * 停止推送并结束异步请求；断开、写出错时也要 complete，否则连接要一直占到异步超时才释放
+     */
+    private synchronized void finish() {
+        if (!close()) {
+            return;
+        }
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException ex) {
+            // 容器已经结束了这个请求
+        }
+    }
+
+    /**
+     * @return 这次调用是否真正关闭了（之前没关闭过）
+     */
+    private synchronized boolean close() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        pending.clear();
+        if (chunkTask != null) {
+            chunkTask.cancel(false);
+        }
+        if (heartbeatTask != null) {
+            heartbeatTask.cancel(false);
+        }
+        return true;
+    }
+}
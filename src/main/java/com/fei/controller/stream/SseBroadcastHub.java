@@ -0,0 +1,111 @@
+package com.fei.controller.stream;
+
+import com.fei.config.VirtualThreads;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE 广播中心：所有 /chat1 连接共用一个有界的调度线程池
+ * <p>
+ * 原来的做法是每个请求 Executors.newSingleThreadExecutor()，线程数跟着连接数线性增长，而且线程池从来不关闭。
+ * 现在：
+ * 1. 一个共享的生产者按固定间隔产生消息，广播给所有订阅者
+ * 2. 每个订阅者有自己的有界队列，积压满了按 chat.sse.overflow-policy 处理（丢最早的 / 断开慢消费者）
+ * 3. 往 emitter 写数据的工作由共享线程池里的 drain 任务完成，线程数固定为 chat.sse.threads，和连接数无关
+ * 4. emitter 完成、超时、出错时都会从订阅者集合中摘掉，不会泄漏
+ * 5. 每条消息只编码一次（SseFrame），所有订阅者拿到的是同一份字节
+ * 6. 每条消息带单调递增的 id 并记进 SseEventLog，客户端断线重连时按 Last-Event-ID 续传，不需要重新跑生产者
+ * <p>
+ * 注意：SseEmitter.send 底层是阻塞写，如果某个客户端的 TCP 缓冲区满了，会占住一个 drain 线程直到写完。
+ * 有界队列 + DISCONNECT 策略可以尽早把这种客户端踢掉。
+ * 开启 spring.threads.virtual.enabled 时，drain 任务改成每次一个虚拟线程，阻塞写只会挂起虚拟线程，不会拖住别的订阅者。
+ */
+@Component
+public class SseBroadcastHub {
+
+    private final SseHubProperties properties;
+    private final Set<SseSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final SseEventLog eventLog;
+    private final boolean virtualThreads;
+    private ScheduledExecutorService scheduler;
+    // 往 emitter 写数据的 drain 任务跑在哪：平台线程时就是 scheduler，虚拟线程时每个任务一个虚拟线程
+    private ExecutorService drainExecutor;
+
+    public SseBroadcastHub(SseHubProperties properties,
+                           @Value("${" + VirtualThreads.ENABLED_PROPERTY + ":false}") boolean virtualThreads) {
+        this.properties = properties;
+        this.eventLog = new SseEventLog(properties.getEventLogCapacity());
+        this.virtualThreads = virtualThreads;
+    }
+
+    @PostConstruct
+    public void start() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(properties.getThreads(),
+                VirtualThreads.factory(virtualThreads, "sse-hub-"));
+        executor.setRemoveOnCancelPolicy(true);
+        scheduler = executor;
+        drainExecutor = virtualThreads ? VirtualThreads.newPerTaskExecutor("sse-drain-") : executor;
+        scheduler.scheduleAtFixedRate(this::produce, properties.getMessageIntervalMillis(),
+                properties.getMessageIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param lastEventId 断线重连时客户端带上的 Last-Event-ID，首次连接为 null
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(properties.getTimeoutMillis());
+        SseSubscriber subscriber = new SseSubscriber(emitter, properties, drainExecutor, eventLog, lastEventId,
+                subscribers::remove);
+        subscribers.add(subscriber);
+        emitter.onCompletion(subscriber::detach);
+        emitter.onTimeout(subscriber::detach);
+        emitter.onError(ex -> subscriber.detach());
+        subscriber.start();
+        return emitter;
+    }
+
+    /**
+     * 记进事件日志并广播；加锁只是为了让多个调用方产生的 id 按顺序进日志，不影响订阅者
+     */
+    public synchronized void broadcast(String message) {
+        broadcast(eventLog.append(null, message));
+    }
+
+    /**
+     * 直接广播一个编码好的 SseFrame，不记进事件日志，也不参与续传
+     */
+    public void broadcast(SseFrame frame) {
+        for (SseSubscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void produce() {
+        if (!subscribers.isEmpty()) {
+            broadcast("Message " + eventLog.nextId());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        drainExecutor.shutdownNow();
+        for (SseSubscriber subscriber : subscribers) {
+            subscriber.close(null);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.fei.controller.stream;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * /chat1 最近发出的事件日志：固定容量的无锁环形数组，给断线重连的客户端按 Last-Event-ID 续传
+ * <p>
+ * 1. 每条事件分配一个单调递增的 id（同时写进 SSE 的 id: 字段），按 id & mask 放进环形数组
+ * 2. 容量固定（向上取整到 2 的幂），新事件直接覆盖最老的事件，内存上限就是 capacity 个 SseFrame
+ * 3. 读的时候校验槽位里的 id 是否就是要找的 id，不一致说明已经被覆盖（或者还没写进来），不需要任何锁
+ * <p>
+ * append 只应该由一个生产者线程调用（SseBroadcastHub 保证了这一点），这样 id 的发布顺序和分配顺序一致。
+ */
+public class SseEventLog {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<SseFrame> slots;
+    private final AtomicLong nextId = new AtomicLong();
+
+    public SseEventLog(int requestedCapacity) {
+        int size = 2;
+        while (size < requestedCapacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    public SseFrame append(String event, String data) {
+        long id = nextId.get();
+        SseFrame frame = SseFrameEncoder.encode(id, event, data);
+        slots.set(index(id), frame);
+        // 先写槽位再推进 nextId，读者看到的 nextId 之前的事件一定已经在数组里了
+        nextId.set(id + 1);
+        return frame;
+    }
+
+    /**
+     * @return 对应 id 的事件；已经被覆盖或者还没产生时返回 null
+     */
+    public SseFrame get(long id) {
+        if (id < 0 || id >= nextId.get()) {
+            return null;
+        }
+        SseFrame frame = slots.get(index(id));
+        return frame != null && frame.getId() == id ? frame : null;
+    }
+
+    /**
+     * 下一条事件将要使用的 id
+     */
+    public long nextId() {
+        return nextId.get();
+    }
+
+    /**
+     * 日志里还保留着的最早的事件 id
+     */
+    public long oldestId() {
+        return Math.max(0, nextId.get() - capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private int index(long id) {
+        return (int) (id & mask);
+    }
+}
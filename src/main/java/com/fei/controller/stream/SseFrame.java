@@ -0,0 +1,115 @@
+package com.fei.controller.stream;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 已经编码成 SSE 线上格式（id:/event:/data: 行 + 空行）的一条消息，不可变，可以同时发给任意多个订阅者
+ * <p>
+ * 通过 toEvent() 交给 SseEmitter.send(SseEventBuilder)：build() 里是同一个只含 byte[] 的集合，
+ * Spring 会用 ByteArrayHttpMessageConverter 原样写出，不会再按订阅者重新拼字符串、重新编码。
+ */
+public final class SseFrame {
+
+    // SSE 的 id: 字段，没有 id 时为 -1
+    private final long id;
+    private final byte[] bytes;
+    private final Set<ResponseBodyEmitter.DataWithMediaType> payload;
+
+    SseFrame(long id, byte[] bytes) {
+        this.id = id;
+        this.bytes = bytes;
+        this.payload = Collections.singleton(new ResponseBodyEmitter.DataWithMediaType(bytes, MediaType.TEXT_EVENT_STREAM));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    /**
+     * 每次返回一个新的 builder，先写出这一条已编码的消息；在 builder 上继续调用 id/name/data 等方法时，
+     * 相当于在它后面再追加一条普通事件，不会改动这一条
+     */
+    public SseEmitter.SseEventBuilder toEvent() {
+        return new FrameEventBuilder(payload);
+    }
+
+    private static final class FrameEventBuilder implements SseEmitter.SseEventBuilder {
+
+        private final Set<ResponseBodyEmitter.DataWithMediaType> frame;
+        // 只有在追加内容时才创建
+        private SseEmitter.SseEventBuilder next;
+
+        FrameEventBuilder(Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+            this.frame = frame;
+        }
+
+        @Override
+        public SseEmitter.SseEventBuilder id(String id) {
+            next().id(id);
+            return this;
+        }
+
+        @Override
+        public SseEmitter.SseEventBuilder name(String eventName) {
+            next().name(eventName);
+            return this;
+        }
+
+        @Override
+        public SseEmitter.SseEventBuilder reconnectTime(long reconnectTimeMillis) {
+            next().reconnectTime(reconnectTimeMillis);
+            return this;
+        }
+
+        @Override
+        public SseEmitter.SseEventBuilder comment(String comment) {
+            next().comment(comment);
+            return this;
+        }
+
+        @Override
+        public SseEmitter.SseEventBuilder data(Object object) {
+            next().data(object);
+            return this;
+        }
+
+        @Override
+        public SseEmitter.SseEventBuilder data(Object object, MediaType mediaType) {
+            next().data(object, mediaType);
+            return this;
+        }
+
+        @Override
+        public Set<ResponseBodyEmitter.DataWithMediaType> build() {
+            if (next == null) {
+                return frame;
+            }
+            Set<ResponseBodyEmitter.DataWithMediaType> parts = new LinkedHashSet<>(frame);
+            parts.addAll(next.build());
+            return parts;
+        }
+
+        private SseEmitter.SseEventBuilder next() {
+            if (next == null) {
+                next = SseEmitter.event();
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.fei.controller.stream;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 把一条 SSE 消息编码成 SseFrame
+ * <p>
+ * 每个线程复用一块 ByteBuffer 做编码的草稿区，编码完只按实际长度拷贝出一个 byte[]，
+ * 所以一条消息不管发给多少个订阅者，编码相关的分配只有这一次。
+ */
+public final class SseFrameEncoder {
+
+    private static final ThreadLocal<ByteBuffer> SCRATCH = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1024));
+
+    private SseFrameEncoder() {
+    }
+
+    /**
+     * @param id    小于 0 表示不带 id: 字段
+     * @param event 可以为 null
+     * @param data  多行内容会拆成多个 data: 行
+     */
+    public static SseFrame encode(long id, String event, String data) {
+        ByteBuffer buffer = SCRATCH.get();
+        buffer.clear();
+        if (id >= 0) {
+            buffer = idField(buffer, id);
+        }
+        if (event != null) {
+            buffer = field(buffer, "event:", event, 0, event.length());
+        }
+        int start = 0;
+        int newLine;
+        while ((newLine = data.indexOf('\n', start)) >= 0) {
+            buffer = field(buffer, "data:", data, start, newLine);
+            start = newLine + 1;
+        }
+        buffer = field(buffer, "data:", data, start, data.length());
+        buffer = ensureCapacity(buffer, 1);
+        buffer.put((byte) '\n');
+        return new SseFrame(id, Arrays.copyOf(buffer.array(), buffer.position()));
+    }
+
+    private static ByteBuffer idField(ByteBuffer buffer, long id) {
+        // "id:" + 最多 19 位数字 + 换行
+        buffer = ensureCapacity(buffer, 23);
+        buffer.put((byte) 'i').put((byte) 'd').put((byte) ':');
+        long divisor = 1;
+        while (id / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + (id / divisor) % 10));
+        }
+        buffer.put((byte) '\n');
+        return buffer;
+    }
+
+    private static ByteBuffer field(ByteBuffer buffer, String prefix, String value, int from, int to) {
+        // UTF-8 下一个 char 最多 3 个字节（代理对两个 char 共 4 个字节），按最坏情况预留
+        buffer = ensureCapacity(buffer, prefix.length() + (to - from) * 3 + 1);
+        for (int i = 0; i < prefix.length(); i++) {
+            buffer.put((byte) prefix.charAt(i));
+        }
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        buffer.put((byte) '\n');
+        return buffer;
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        grown.put(buffer);
+        SCRATCH.set(grown);
+        return grown;
+    }
+}
@@ -0,0 +1,62 @@
+package com.fei.controller.stream;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * SseBroadcastHub 的配置，对应 application.yml 中以 chat.sse 开头的属性
+ * <p>
+ * 和 Car 一样，需要在主类上通过 @EnableConfigurationProperties 启用。
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.sse")
+public class SseHubProperties {
+
+    /**
+     * 驱动所有 SseEmitter 的共享线程数，和连接数无关
+     */
+    private int threads = 2;
+
+    /**
+     * 每个订阅者最多积压多少条消息
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * 订阅者积压满了之后怎么办
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    /**
+     * SseEmitter 超时时间（毫秒）
+     */
+    private long timeoutMillis = 60_000L;
+
+    /**
+     * 共享生产者推送消息的间隔（毫秒）
+     */
+    private long messageIntervalMillis = 1000L;
+
+    /**
+     * 每个订阅者收到多少条消息后正常结束连接，和原来 /chat1 推 30 条就结束保持一致
+     */
+    private int messagesPerSubscriber = 30;
+
+    /**
+     * 事件日志保留最近多少条事件，供断线重连时按 Last-Event-ID 续传（向上取整到 2 的幂）
+     */
+    private int eventLogCapacity = 1024;
+
+    public enum OverflowPolicy {
+        /**
+         * 丢掉最早积压的消息，保证慢消费者总能收到最新的数据
+         */
+        DROP_OLDEST,
+        /**
+         * 直接断开慢消费者，让客户端自己重连
+         */
+        DISCONNECT
+    }
+}
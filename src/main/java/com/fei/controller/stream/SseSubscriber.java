@@ -0,0 +1,188 @@
+package com.fei.controller.stream;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 一个 /chat1 连接：SseEmitter + 有界消息队列
+ * <p>
+ * 队列里放的是已经编码好的 SseFrame，多个订阅者共享同一个实例。
+ * <p>
+ * 广播线程只负责往队列里放消息；真正调用 emitter.send 的是共享线程池里的一次 drain 任务。
+ * 同一个订阅者同一时间最多只有一个 drain 任务在跑（draining 标志），所以消息顺序不会乱，也不需要加锁。
+ * <p>
+ * 断线重连（带 Last-Event-ID）时：
+ * 1. 先注册到 hub，之后广播的新事件照常进队列
+ * 2. 第一次 drain 先从 SseEventLog 里补发 Last-Event-ID 之后的事件，再处理队列
+ * 3. 队列里 id 不大于已发送 id 的事件直接跳过，所以补发和实时推送之间既不会漏，也不会重复
+ * 4. 要续传的事件已经被挤出日志时，先发一条 event:evicted 明确告诉客户端，再从日志里最早的一条接着发
+ */
+class SseSubscriber {
+
+    private final SseEmitter emitter;
+    private final BlockingQueue<SseFrame> queue;
+    private final SseHubProperties.OverflowPolicy overflowPolicy;
+    private final Executor executor;
+    private final Consumer<SseSubscriber> onClose;
+    private final SseEventLog eventLog;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // 以下字段只在 drain 任务里读写
+    private int remaining;
+    private long lastDeliveredId;
+    private boolean replayPending;
+
+    /**
+     * @param lastEventId 客户端带上来的 Last-Event-ID，没有时为 null
+     */
+    SseSubscriber(SseEmitter emitter, SseHubProperties properties, Executor executor, SseEventLog eventLog,
+                  Long lastEventId, Consumer<SseSubscriber> onClose) {
+        this.emitter = emitter;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.overflowPolicy = properties.getOverflowPolicy();
+        this.executor = executor;
+        this.eventLog = eventLog;
+        this.onClose = onClose;
+        this.remaining = properties.getMessagesPerSubscriber();
+        this.lastDeliveredId = lastEventId == null ? -1 : lastEventId;
+        this.replayPending = lastEventId != null;
+    }
+
+    /**
+     * 注册到 hub 之后调用：需要续传时不等新事件，立刻开始补发
+     */
+    void start() {
+        if (replayPending) {
+            scheduleDrain();
+        }
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    /**
+     * 由广播线程调用，不会阻塞
+     */
+    void offer(SseFrame frame) {
+        if (closed.get()) {
+            return;
+        }
+        while (!queue.offer(frame)) {
+            if (overflowPolicy == SseHubProperties.OverflowPolicy.DISCONNECT) {
+                close(new IOException("SSE subscriber is too slow, queue capacity exceeded"));
+                return;
+            }
+            // DROP_OLDEST：挤掉最早的一条再放，并发时可能需要多试几次
+            queue.poll();
+        }
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            if (replayPending) {
+                replayPending = false;
+                replay();
+            }
+            SseFrame frame;
+            while (!closed.get() && (frame = queue.poll()) != null) {
+                if (frame.getId() < 0 || frame.getId() > lastDeliveredId) {
+                    deliver(frame);
+                }
+            }
+        } catch (IOException | IllegalStateException ex) {
+            // 客户端已经断开，或者 emitter 已经结束
+            close(ex);
+        } finally {
+            draining.set(false);
+        }
+        // drain 结束和 offer 之间可能有新消息进来，再检查一次，避免消息滞留在队列里
+        if (!closed.get() && !queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void replay() throws IOException {
+        long next = lastDeliveredId + 1;
+        if (next > eventLog.nextId()) {
+            // 比日志里最新的还新，多半是服务重启前的 id，同样按“已经不在日志里”处理
+            sendEvicted(next, eventLog.oldestId());
+            next = eventLog.nextId();
+            lastDeliveredId = next - 1;
+        }
+        while (!closed.get()) {
+            SseFrame frame = eventLog.get(next);
+            if (frame == null) {
+                long oldest = eventLog.oldestId();
+                if (next >= oldest) {
+                    // 已经追上最新的事件，剩下的交给队列
+                    return;
+                }
+                sendEvicted(next, oldest);
+                next = oldest;
+                continue;
+            }
+            deliver(frame);
+            next++;
+        }
+    }
+
+    private void sendEvicted(long requestedId, long oldestId) throws IOException {
+        emitter.send(SseFrameEncoder.encode(-1, "evicted",
+                "{\"requestedId\":" + requestedId + ",\"oldestAvailableId\":" + oldestId + "}").toEvent());
+    }
+
+    private void deliver(SseFrame frame) throws IOException {
+        // 同一个 SseFrame 会发给所有订阅者，这里直接写出预先编码好的字节
+        emitter.send(frame.toEvent());
+        if (frame.getId() >= 0) {
+            lastDeliveredId = frame.getId();
+        }
+        if (--remaining == 0) {
+            close(null);
+        }
+    }
+
+    /**
+     * @param error 为 null 表示正常结束
+     */
+    void close(Throwable error) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        queue.clear();
+        onClose.accept(this);
+        try {
+            if (error == null) {
+                emitter.complete();
+            } else {
+                emitter.completeWithError(error);
+            }
+        } catch (IllegalStateException ignored) {
+            // emitter 已经因为超时/出错结束了
+        }
+    }
+
+    /**
+     * emitter 自己结束（完成、超时、出错）时的回调，只需要从 hub 里摘掉
+     */
+    void detach() {
+        if (closed.compareAndSet(false, true)) {
+            queue.clear();
+            onClose.accept(this);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.fei.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 给 DataSource 套一层埋点，记录到 JdbcMetrics：
+ * <p>
+ * - getConnection：从连接池取连接的等待时间
+ * - Connection.commit / rollback：提交、回滚的耗时
+ * - Statement / PreparedStatement 的 execute*：按 SQL 形状统计执行耗时；PreparedStatement 在 prepare 时就确定统计槽位，
+ *   执行时不再查表
+ * <p>
+ * 连接和语句用 JDK 动态代理包装，其余方法原样转发。
+ * close 会转发给连接池（HikariDataSource 的 close），容器关闭时连接池照常释放。
+ */
+public class InstrumentedDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private final JdbcMetrics metrics;
+
+    public InstrumentedDataSource(DataSource target, JdbcMetrics metrics) {
+        super(target);
+        this.metrics = metrics;
+        if (target instanceof HikariDataSource) {
+            metrics.watchPool((HikariDataSource) target);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = super.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            metrics.recordAcquireError();
+            throw e;
+        }
+        metrics.recordAcquire(System.nanoTime() - start);
+        return wrap(connection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = super.getConnection(username, password);
+        } catch (SQLException | RuntimeException e) {
+            metrics.recordAcquireError();
+            throw e;
+        }
+        metrics.recordAcquire(System.nanoTime() - start);
+        return wrap(connection);
+    }
+
+    /**
+     * HikariDataSource 的 close 不抛受检异常；别的连接池抛了就包一层，不把 AutoCloseable 的 throws Exception 传出去
+     */
+    @Override
+    public void close() {
+        DataSource target = obtainTargetDataSource();
+        if (!(target instanceof AutoCloseable)) {
+            return;
+        }
+        try {
+            ((AutoCloseable) target).close();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("关闭数据源失败", e);
+        }
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "commit": {
+                    long start = System.nanoTime();
+                    try {
+                        return invokeTarget(target, method, args);
+                    } finally {
+                        metrics.recordCommit(System.nanoTime() - start);
+                    }
+                }
+                case "rollback": {
+                    long start = System.nanoTime();
+                    try {
+                        return invokeTarget(target, method, args);
+                    } finally {
+                        metrics.recordRollback(System.nanoTime() - start);
+                    }
+                }
+                case "prepareStatement":
+                case "prepareCall": {
+                    Object statement = invokeTarget(target, method, args);
+                    JdbcMetrics.StatementMetrics statementMetrics = metrics.statement((String) args[0]);
+                    Class<?> type = statement instanceof CallableStatement ? CallableStatement.class : PreparedStatement.class;
+                    return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                            new Class<?>[]{type}, new StatementHandler(statement, (Connection) proxy, statementMetrics));
+                }
+                case "createStatement": {
+                    Object statement = invokeTarget(target, method, args);
+                    return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                            new Class<?>[]{Statement.class}, new StatementHandler(statement, (Connection) proxy, null));
+                }
+                default:
+                    return invokeTarget(target, method, args);
+            }
+        }
+    }
+
+    /**
+     * prepared 不为 null 时是 PreparedStatement，耗时记到 prepare 时确定的槽位；
+     * 否则是普通 Statement，按 execute 时传入的 SQL 找槽位
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Object target;
+        // 创建这个语句的连接代理，getConnection 返回它，stmt.getConnection().commit() 照样计入提交耗时
+        private final Connection connection;
+        private final JdbcMetrics.StatementMetrics prepared;
+        // 普通 Statement 的 addBatch(sql)，executeBatch 时记到第一条的形状下
+        private String firstBatchSql;
+
+        StatementHandler(Object target, Connection connection, JdbcMetrics.StatementMetrics prepared) {
+            this.target = target;
+            this.connection = connection;
+            this.prepared = prepared;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("getConnection")) {
+                return connection;
+            }
+            if (prepared == null && name.equals("addBatch") && firstBatchSql == null) {
+                firstBatchSql = (String) args[0];
+            }
+            if (name.equals("clearBatch")) {
+                firstBatchSql = null;
+            }
+            if (!name.startsWith("execute")) {
+                return invokeTarget(target, method, args);
+            }
+            JdbcMetrics.StatementMetrics statementMetrics = prepared;
+            if (statementMetrics == null) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : firstBatchSql;
+                statementMetrics = sql != null ? metrics.statement(sql) : metrics.other();
+                if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+                    firstBatchSql = null;
+                }
+            }
+            long start = System.nanoTime();
+            try {
+                return invokeTarget(target, method, args);
+            } catch (SQLException e) {
+                statementMetrics.getErrors().increment();
+                throw e;
+            } finally {
+                statementMetrics.getLatency().record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.fei.jdbc;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * 把容器里的 DataSource 换成 InstrumentedDataSource
+ * <p>
+ * 在 Bean 初始化之后替换，所以 JdbcTemplate、DataSourceTransactionManager、schema.sql 的初始化拿到的都是包装后的数据源，
+ * AccountService、OutboxRelay 等不需要任何改动。
+ */
+@Component
+@ConditionalOnProperty(name = "jdbc.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class JdbcInstrumentationPostProcessor implements BeanPostProcessor {
+
+    private final JdbcMetrics metrics;
+
+    public JdbcInstrumentationPostProcessor(JdbcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof InstrumentedDataSource)) {
+            return new InstrumentedDataSource((DataSource) bean, metrics);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,141 @@
+package com.fei.jdbc;
+
+import com.fei.aop.count_method_call_count.LatencyHistogram;
+import com.fei.aop.count_method_call_count.MetricsContributor;
+import com.fei.aop.count_method_call_count.OpenMetricsExporter;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.Getter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JDBC 埋点的统计数据，通过 /metrics 输出
+ * <p>
+ * - 取连接的等待时间（连接池满了时主要耗在这里）和失败次数
+ * - 每种 SQL 形状（见 SqlShapes）的执行耗时和失败次数
+ * - commit / rollback 的耗时
+ * - Hikari 连接池的活跃、空闲、总连接数、上限和排队等连接的线程数
+ * <p>
+ * 热路径上只有：按 SQL 原文查一次 ConcurrentHashMap（JdbcTemplate 的 SQL 通常是常量，String 的 hash 已缓存）、
+ * 两次 nanoTime 和几次原子累加，不分配对象。SQL 原文到统计槽位的映射有上限，
+ * 超出后不再缓存，每次现算形状；形状的数量也有上限，超出的记到 "other"。
+ */
+@Component
+@ConditionalOnProperty(name = "jdbc.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class JdbcMetrics implements MetricsContributor {
+
+    static final String OTHER_SHAPE = "other";
+
+    private final int maxSqlShapes;
+    // SQL 原文 -> 统计槽位，IN 列表长短不同的 SQL 原文不同但落到同一个槽位
+    private final Map<String, StatementMetrics> bySql = new ConcurrentHashMap<>();
+    // SQL 形状 -> 统计槽位
+    private final Map<String, StatementMetrics> byShape = new ConcurrentHashMap<>();
+    private final StatementMetrics other = new StatementMetrics(OTHER_SHAPE);
+
+    private final LatencyHistogram acquire = new LatencyHistogram();
+    private final LongAdder acquireErrors = new LongAdder();
+    private final LatencyHistogram commit = new LatencyHistogram();
+    private final LatencyHistogram rollback = new LatencyHistogram();
+    private volatile HikariDataSource pool;
+
+    public JdbcMetrics(JdbcMetricsProperties properties) {
+        this.maxSqlShapes = properties.getMaxSqlShapes();
+    }
+
+    /**
+     * 由 InstrumentedDataSource 在包装连接池时登记，用于输出连接池的状态
+     */
+    void watchPool(HikariDataSource pool) {
+        this.pool = pool;
+    }
+
+    StatementMetrics statement(String sql) {
+        StatementMetrics metrics = bySql.get(sql);
+        if (metrics != null) {
+            return metrics;
+        }
+        String shape = SqlShapes.normalize(sql);
+        metrics = byShape.get(shape);
+        if (metrics == null) {
+            metrics = byShape.size() < maxSqlShapes ? byShape.computeIfAbsent(shape, StatementMetrics::new) : other;
+        }
+        if (bySql.size() < maxSqlShapes * 4) {
+            bySql.putIfAbsent(sql, metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * 拿不到 SQL 原文的语句（比如没有 addBatch 就 executeBatch）记到这里
+     */
+    StatementMetrics other() {
+        return other;
+    }
+
+    void recordAcquire(long nanos) {
+        acquire.record(nanos);
+    }
+
+    void recordAcquireError() {
+        acquireErrors.increment();
+    }
+
+    void recordCommit(long nanos) {
+        commit.record(nanos);
+    }
+
+    void recordRollback(long nanos) {
+        rollback.record(nanos);
+    }
+
+    @Override
+    public void writeMetrics(OpenMetricsExporter.Sink sink) throws IOException {
+        sink.durationSummary("jdbc_connection_acquire_seconds", "Time spent waiting for a pooled connection.", acquire);
+        sink.counter("jdbc_connection_acquire_errors", "getConnection calls that failed or timed out.", acquireErrors.sum());
+        sink.durationSummary("jdbc_commit_seconds", "Duration of Connection.commit.", commit);
+        sink.durationSummary("jdbc_rollback_seconds", "Duration of Connection.rollback.", rollback);
+
+        sink.durationSummaryHeader("jdbc_statement_seconds", "Statement execution time by SQL shape.");
+        for (StatementMetrics metrics : byShape.values()) {
+            sink.durationSummary("jdbc_statement_seconds", "sql", metrics.getShape(), metrics.getLatency());
+        }
+        sink.durationSummary("jdbc_statement_seconds", "sql", OTHER_SHAPE, other.getLatency());
+        sink.counterHeader("jdbc_statement_errors", "Statements that threw SQLException, by SQL shape.");
+        for (StatementMetrics metrics : byShape.values()) {
+            sink.counter("jdbc_statement_errors", "sql", metrics.getShape(), metrics.getErrors().sum());
+        }
+        sink.counter("jdbc_statement_errors", "sql", OTHER_SHAPE, other.getErrors().sum());
+
+        HikariDataSource pool = this.pool;
+        HikariPoolMXBean mxBean = pool != null ? pool.getHikariPoolMXBean() : null;
+        if (mxBean != null) {
+            sink.gauge("jdbc_pool_active_connections", "Connections currently borrowed from the pool.", mxBean.getActiveConnections());
+            sink.gauge("jdbc_pool_idle_connections", "Idle connections in the pool.", mxBean.getIdleConnections());
+            sink.gauge("jdbc_pool_total_connections", "Open connections, active plus idle.", mxBean.getTotalConnections());
+            sink.gauge("jdbc_pool_max_connections", "Configured maximum pool size.", pool.getMaximumPoolSize());
+            sink.gauge("jdbc_pool_pending_threads", "Threads waiting for a connection; non-zero means the pool is saturated.",
+                    mxBean.getThreadsAwaitingConnection());
+        }
+    }
+
+    /**
+     * 一种 SQL 形状的统计槽位
+     */
+    @Getter
+    static final class StatementMetrics {
+        private final String shape;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        StatementMetrics(String shape) {
+            this.shape = shape;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.fei.jdbc;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * JDBC 埋点的配置，对应 application.yml 中以 jdbc.metrics 开头的属性
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "jdbc.metrics")
+public class JdbcMetricsProperties {
+
+    /**
+     * 是否给 DataSource 套上埋点
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最多单独统计多少种 SQL 形状，超出的都记到 "other" 下，防止标签数量失控
+     */
+    private int maxSqlShapes = 200;
+}
@@ -0,0 +1,61 @@
+package com.fei.jdbc;
+
+import java.util.regex.Pattern;
+
+/**
+ * 把 SQL 归一成“形状”，作为耗时统计的分组标签
+ * <p>
+ * - 连续空白合并成一个空格
+ * - 字符串、数字字面量替换成 ?
+ * - 参数列表折叠：IN (?, ?, ?) 和 IN (?) 是同一个形状，多行 VALUES (?, ?), (?, ?) 折叠成一行
+ * <p>
+ * 这样 OrderedTransferApplier 按账户个数拼出来的 IN 列表、outbox 按页拼的 DELETE 都只算一个形状，标签数量不会随参数个数膨胀。
+ */
+final class SqlShapes {
+
+    static final int MAX_LENGTH = 200;
+
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\?(?: ?, ?\\?)+\\)");
+    private static final Pattern REPEATED_ROWS = Pattern.compile("\\(\\?\\)(?: ?, ?\\(\\?\\))+");
+
+    private SqlShapes() {
+    }
+
+    static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(Math.min(sql.length(), 256));
+        int n = sql.length();
+        for (int i = 0; i < n; i++) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i + 1 < n && Character.isWhitespace(sql.charAt(i + 1))) {
+                    i++;
+                }
+                if (out.length() > 0) {
+                    out.append(' ');
+                }
+            } else if (c == '\'') {
+                // 字符串字面量，'' 是转义的单引号
+                i++;
+                while (i < n && !(sql.charAt(i) == '\'' && (i + 1 >= n || sql.charAt(i + 1) != '\''))) {
+                    i += sql.charAt(i) == '\'' ? 2 : 1;
+                }
+                out.append('?');
+            } else if (Character.isDigit(c) && (out.length() == 0 || !isIdentifierPart(out.charAt(out.length() - 1)))) {
+                while (i + 1 < n && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else {
+                out.append(c);
+            }
+        }
+        String shape = out.toString().trim();
+        shape = PARAMETER_LIST.matcher(shape).replaceAll("(?)");
+        shape = REPEATED_ROWS.matcher(shape).replaceAll("(?)");
+        return shape.length() > MAX_LENGTH ? shape.substring(0, MAX_LENGTH) + "..." : shape;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -4,6 +4,10 @@ import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+/**
+ * ApplicationReadyEvent 在所有 ApplicationRunner、CommandLineRunner 执行完之后发布，也是一个预热时机。
+ * 这里的代码在主线程里串行执行；需要并行、有依赖顺序、有时间预算的预热用 @Warmup，见 WarmupCoordinator。
+ */
 @Component
 public class MyApplicationReadyListener {
 
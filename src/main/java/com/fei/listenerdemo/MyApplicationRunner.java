@@ -9,6 +9,8 @@ import org.springframework.stereotype.Component;
  * 只要容器中存在该类型的 Bean，Spring Boot 应用启动并完成所有 Bean 初始化后，
  * 会在主类的 run 方法中调用 callRunners(context, applicationArguments) 时自动执行其 run 方法。
  * 这是应用完全启动后进行缓存预热等初始化操作的一个时机。
+ * 注意这里是在主线程里串行执行的，而且执行时应用已经在接流量；需要并行、有依赖顺序、有时间预算、
+ * 并且预热完成前不接流量的预热，用 @Warmup，见 WarmupCoordinator。
  */
 @Component
 public class MyApplicationRunner implements ApplicationRunner {
@@ -1,10 +1,15 @@
 package com.fei.listenerdemo;
 
+import com.fei.listenerdemo.startup.StartupProfiler;
+import com.fei.listenerdemo.startup.StartupReport;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.SpringApplicationRunListener;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.context.ConfigurableApplicationContext;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 /*
 1. 目录结构
     新建了 com.fei.listenerdemo 包
@@ -38,44 +43,99 @@ import org.springframework.context.ConfigurableApplicationContext;
     - 不能通过 ApplicationContext.getBean(...) 获取，否则会抛出 NoSuchBeanDefinitionException。
     - 这类监听器只能被 Spring Boot 启动流程自动调用，不能像普通 Bean 一样注入或通过容器获取。
     - 如果想让某个监听器既能参与 Spring Boot 启动流程，又能作为 Bean 注入，需要分别实现不同的机制（一般没必要这样做）。
+
+6. 启动耗时分析
+    每个阶段回调都会交给 StartupProfiler 记一个标记，得到每个阶段的墙钟时间和 CPU 时间；
+    contextPrepared 时把 bean 计时器挂到 BeanFactory 上，统计每个 bean 的创建耗时（见 BeanCreationTimer）。
+    启动完成后：
+    - 控制台打印各阶段耗时和最慢的几个 bean
+    - 配置了 startup.profiler.report-file 时完整报告写到这个文件（默认不写），两次发布的报告可以直接 diff
+    - GET /startup/profile 返回同一份报告
+    startup.profiler.enabled=false 时只打印阶段，不统计 bean、不写文件。
 */
 public class MyApplicationStartingListener implements SpringApplicationRunListener {
+
+    private static final int SLOWEST_BEANS_TO_PRINT = 10;
+
+    private final StartupProfiler profiler = new StartupProfiler();
+    private boolean profilingEnabled = true;
+    // environmentPrepared 之前就启动失败（比如 application.yml 写错）时还没读到配置，按不写文件处理
+    private String reportFile = "";
+
     public MyApplicationStartingListener(SpringApplication application, String[] args) {
         // 构造方法必须保留
     }
 
     @Override
     public void starting() {
+        profiler.mark("jvm", "JVM 启动到 SpringApplication.run");
         System.out.println("【监听器】Spring Boot 正在启动（starting）...");
     }
 
     @Override
     public void environmentPrepared(ConfigurableEnvironment environment) {
+        profiler.mark("environment", "准备 Environment（application.yml、命令行参数）");
+        profilingEnabled = environment.getProperty("startup.profiler.enabled", Boolean.class, true);
+        reportFile = environment.getProperty("startup.profiler.report-file", "");
         System.out.println("【监听器】环境已准备好（environmentPrepared）...");
     }
 
     @Override
     public void contextPrepared(ConfigurableApplicationContext context) {
+        profiler.mark("createContext", "打印 banner、创建 ApplicationContext、执行 ApplicationContextInitializer");
+        if (profilingEnabled) {
+            profiler.attach(context);
+        }
         System.out.println("【监听器】上下文已准备好（contextPrepared）...");
     }
 
     @Override
     public void contextLoaded(ConfigurableApplicationContext context) {
+        profiler.mark("loadSources", "注册主配置类");
         System.out.println("【监听器】上下文已加载（contextLoaded）...");
     }
 
     @Override
     public void started(ConfigurableApplicationContext context) {
+        profiler.mark("refresh", "创建所有单例 bean、启动 Tomcat");
         System.out.println("【监听器】Spring Boot 已启动（started）...");
     }
 
     @Override
     public void running(ConfigurableApplicationContext context) {
+        profiler.mark("runners", "执行 ApplicationRunner / CommandLineRunner");
         System.out.println("【监听器】Spring Boot 正在运行（running）...");
+        report();
     }
 
     @Override
     public void failed(ConfigurableApplicationContext context, Throwable exception) {
+        profiler.mark("failed", "启动失败");
         System.out.println("【监听器】Spring Boot 启动失败（failed）...");
+        report();
+    }
+
+    private void report() {
+        StartupReport report = profiler.finish();
+        System.out.printf("【监听器】启动总耗时 %.1f ms%n", report.getTotalMillis());
+        for (StartupReport.Phase phase : report.getPhases()) {
+            System.out.printf("    %-16s %9.1f ms（主线程 CPU %.1f ms，进程 CPU %.1f ms）%n", phase.getName(),
+                    phase.getWallMillis(), phase.getMainThreadCpuMillis(), phase.getProcessCpuMillis());
+        }
+        if (!profilingEnabled) {
+            return;
+        }
+        System.out.printf("【监听器】共创建 %d 个 bean，自身耗时最多的 %d 个：%n", report.getBeanCount(), SLOWEST_BEANS_TO_PRINT);
+        report.getBeans().stream().limit(SLOWEST_BEANS_TO_PRINT).forEach(bean ->
+                System.out.printf("    %9.1f ms  %s（%s）%n", bean.getSelfMillis(), bean.getName(), bean.getType()));
+        if (reportFile == null || reportFile.isEmpty()) {
+            return;
+        }
+        try {
+            profiler.writeReport(Paths.get(reportFile));
+            System.out.println("【监听器】启动耗时报告已写入 " + Paths.get(reportFile).toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("【监听器】启动耗时报告写入失败: " + e);
+        }
     }
-} 
\ No newline at end of file
+}
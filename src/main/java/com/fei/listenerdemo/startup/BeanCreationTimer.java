@@ -0,0 +1,121 @@
+package com.fei.listenerdemo.startup;
+
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.util.ClassUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 统计每个 bean 的创建耗时，由 MyApplicationStartingListener 在容器刷新前直接加到 BeanFactory 的最前面，
+ * 所以 BeanFactoryPostProcessor、其他 BeanPostProcessor 这些最早创建的 bean 也能统计到
+ * <p>
+ * 计时从 postProcessBeforeInstantiation（实例化之前，@Bean 方法和构造方法都还没调用）开始，
+ * 到本处理器的 postProcessAfterInitialization（注入和 @PostConstruct、afterPropertiesSet 等初始化回调之后）结束。
+ * 排在后面的处理器在初始化之后做的事（比如 AOP 生成代理）不在计时范围内。
+ * <p>
+ * 创建 A 的过程中需要先创建依赖 B 时，B 的计时嵌套在 A 里：A 的 total 包括 B，self 扣掉了 B。
+ * 每个线程一个栈，并行创建 bean 时互不干扰。
+ */
+class BeanCreationTimer implements InstantiationAwareBeanPostProcessor {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final ThreadLocal<ArrayDeque<Frame>> stacks = ThreadLocal.withInitial(ArrayDeque::new);
+    private final Queue<Record> records = new ConcurrentLinkedQueue<>();
+    private final boolean cpuTimeSupported = THREADS.isCurrentThreadCpuTimeSupported();
+    private volatile boolean recording = true;
+
+    @Override
+    public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) {
+        if (recording) {
+            stacks.get().push(new Frame(beanName, System.nanoTime(), threadCpuNanos()));
+        }
+        return null;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!recording) {
+            return bean;
+        }
+        ArrayDeque<Frame> stack = stacks.get();
+        if (stack.isEmpty()) {
+            stacks.remove();
+            return bean;
+        }
+        // FactoryBean 产出的对象、没有经过 postProcessBeforeInstantiation 的 bean 在栈里找不到，忽略；
+        // 栈顶不是它说明中间有 bean 创建失败了，那些帧直接丢掉
+        if (stack.stream().noneMatch(f -> f.beanName.equals(beanName))) {
+            return bean;
+        }
+        Frame frame;
+        while (!(frame = stack.pop()).beanName.equals(beanName)) {
+            // 创建失败的 bean 没有结果，丢弃
+        }
+        long totalNanos = System.nanoTime() - frame.startNanos;
+        long totalCpuNanos = threadCpuNanos() - frame.startCpuNanos;
+        Frame parent = stack.peek();
+        if (parent != null) {
+            parent.childNanos += totalNanos;
+            parent.childCpuNanos += totalCpuNanos;
+        }
+        // CGLIB 生成的子类名每次启动可能不同，记原始类名，报告才能 diff
+        records.add(new Record(beanName, ClassUtils.getUserClass(bean).getName(), totalNanos, totalNanos - frame.childNanos,
+                totalCpuNanos - frame.childCpuNanos, Thread.currentThread().getName()));
+        if (stack.isEmpty()) {
+            stacks.remove();
+        }
+        return bean;
+    }
+
+    /**
+     * 启动完成后不再记录，之后按需创建的原型 bean 不会让记录无限增长
+     */
+    void stop() {
+        recording = false;
+    }
+
+    Iterable<Record> records() {
+        return records;
+    }
+
+    private long threadCpuNanos() {
+        return cpuTimeSupported ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static final class Frame {
+        final String beanName;
+        final long startNanos;
+        final long startCpuNanos;
+        long childNanos;
+        long childCpuNanos;
+
+        Frame(String beanName, long startNanos, long startCpuNanos) {
+            this.beanName = beanName;
+            this.startNanos = startNanos;
+            this.startCpuNanos = startCpuNanos;
+        }
+    }
+
+    static final class Record {
+        final String beanName;
+        final String type;
+        final long totalNanos;
+        final long selfNanos;
+        final long selfCpuNanos;
+        final String thread;
+
+        Record(String beanName, String type, long totalNanos, long selfNanos, long selfCpuNanos, String thread) {
+            this.beanName = beanName;
+            this.type = type;
+            this.totalNanos = totalNanos;
+            this.selfNanos = selfNanos;
+            this.selfCpuNanos = selfCpuNanos;
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.fei.listenerdemo.startup;
+
+import com.fei.listenerdemo.warmup.WarmupCoordinator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 训练运行：启动完成、关键预热任务结束后关闭应用并退出进程，只在 startup.exit-after-start=true 时生效
+ * <p>
+ * fast-startup profile 用它生成 AppCDS 归档：-XX:ArchiveClassesAtExit 在 JVM 退出时把加载过的类写进归档，
+ * 等预热结束再退出，预热任务用到的类（JDBC 驱动、缓存等）也在归档里。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "startup.exit-after-start", havingValue = "true")
+public class ExitAfterStartup {
+
+    private static final long MAX_WARMUP_WAIT_SECONDS = 120;
+
+    private final ConfigurableApplicationContext context;
+    private final WarmupCoordinator warmupCoordinator;
+
+    public ExitAfterStartup(ConfigurableApplicationContext context, WarmupCoordinator warmupCoordinator) {
+        this.context = context;
+        this.warmupCoordinator = warmupCoordinator;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        // 等预热要轮询，放到单独的线程里，不卡住 SpringApplication.run 的收尾
+        Thread exiter = new Thread(() -> {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(MAX_WARMUP_WAIT_SECONDS);
+            while (!warmupCoordinator.isReady() && System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            log.info("startup.exit-after-start=true，启动和预热已完成，退出");
+            System.exit(SpringApplication.exit(context));
+        }, "exit-after-start");
+        exiter.start();
+    }
+}
@@ -0,0 +1,171 @@
+package com.fei.listenerdemo.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 启动耗时分析：记录启动各阶段的墙钟时间和 CPU 时间，以及每个 bean 的创建耗时
+ * <p>
+ * 由 MyApplicationStartingListener 在每个启动阶段回调里调用 mark，相邻两个标记之间就是一个阶段：
+ * <pre>
+ * jvm              JVM 启动到 SpringApplication.run（类加载、main 方法之前的工作）
+ * environment      准备 Environment（读取 application.yml、命令行参数）
+ * createContext    打印 banner、创建 ApplicationContext、执行 ApplicationContextInitializer
+ * loadSources      注册主配置类
+ * beanDefinitions  解析配置类、组件扫描、自动配置、导入 beans.xml、给 @Configuration 类生成 CGLIB 子类
+ * refresh          其余 BeanFactoryPostProcessor、创建所有单例 bean、启动 Tomcat
+ * runners          ApplicationRunner / CommandLineRunner
+ * </pre>
+ * beanDefinitions 的结束点由 attach 注册的 BeanFactoryPostProcessor 标记：程序注册的普通 BeanFactoryPostProcessor
+ * 在 ConfigurationClassPostProcessor 之后、容器里声明的 BeanFactoryPostProcessor 之前执行。
+ * <p>
+ * 启动完成后调用 finish 生成报告，之后 getReport 返回的就是这一份，不再变化。
+ */
+public class StartupProfiler {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final OperatingSystemMXBean OS = ManagementFactory.getOperatingSystemMXBean();
+
+    private final List<Mark> marks = new ArrayList<>();
+    private final BeanCreationTimer beanTimer = new BeanCreationTimer();
+    private ConfigurableListableBeanFactory beanFactory;
+    private volatile StartupReport report;
+
+    public StartupProfiler() {
+        // JVM 启动时刻作为第一个标记，CPU 时间从 0 算起
+        long uptimeNanos = ManagementFactory.getRuntimeMXBean().getUptime() * 1_000_000L;
+        marks.add(new Mark("jvmStart", null, System.nanoTime() - uptimeNanos, 0, 0));
+    }
+
+    /**
+     * 记录一个阶段的结束
+     *
+     * @param name        阶段名
+     * @param description 阶段说明，写进报告
+     */
+    public synchronized void mark(String name, String description) {
+        marks.add(new Mark(name, description, System.nanoTime(), threadCpuNanos(), processCpuNanos()));
+    }
+
+    /**
+     * 上下文创建好之后、刷新之前调用：挂上 bean 计时器和 beanDefinitions 阶段的结束标记，
+     * 并把自己注册成单例，/startup/profile 接口可以注入
+     */
+    public void attach(ConfigurableApplicationContext context) {
+        this.beanFactory = context.getBeanFactory();
+        beanFactory.addBeanPostProcessor(beanTimer);
+        context.addBeanFactoryPostProcessor(new BeanDefinitionsLoadedMarker());
+        beanFactory.registerSingleton("startupProfiler", this);
+    }
+
+    /**
+     * 停止 bean 计时并生成报告；启动失败时也可以调用，得到失败之前的部分数据
+     */
+    public synchronized StartupReport finish() {
+        beanTimer.stop();
+        List<StartupReport.Phase> phases = new ArrayList<>();
+        for (int i = 1; i < marks.size(); i++) {
+            Mark previous = marks.get(i - 1);
+            Mark current = marks.get(i);
+            boolean processCpuKnown = current.processCpuNanos >= 0 && previous.processCpuNanos >= 0;
+            phases.add(new StartupReport.Phase(current.name, current.description,
+                    millis(current.nanos - previous.nanos),
+                    millis(current.threadCpuNanos - previous.threadCpuNanos),
+                    processCpuKnown ? millis(current.processCpuNanos - previous.processCpuNanos) : -1));
+        }
+
+        List<StartupReport.BeanTiming> beans = new ArrayList<>();
+        for (BeanCreationTimer.Record record : beanTimer.records()) {
+            beans.add(new StartupReport.BeanTiming(record.beanName, record.type, source(record.beanName),
+                    millis(record.totalNanos), millis(record.selfNanos), millis(record.selfCpuNanos), record.thread));
+        }
+        // 耗时相同时按名字排，两份报告 diff 时顺序稳定
+        beans.sort(Comparator.comparingDouble(StartupReport.BeanTiming::getSelfMillis).reversed()
+                .thenComparing(StartupReport.BeanTiming::getName));
+
+        Mark first = marks.get(0);
+        Mark last = marks.get(marks.size() - 1);
+        report = new StartupReport(System.currentTimeMillis(), millis(last.nanos - first.nanos), phases, beans.size(), beans);
+        return report;
+    }
+
+    /**
+     * finish 之前返回 null
+     */
+    public StartupReport getReport() {
+        return report;
+    }
+
+    public void writeReport(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+    }
+
+    /**
+     * bean 的定义来源：@Bean 方法写成 “配置类bean名.方法名()”，XML 和扫描到的类写资源描述（如 class path resource [beans.xml]）
+     */
+    private String source(String beanName) {
+        if (beanFactory == null || !beanFactory.containsBeanDefinition(beanName)) {
+            return null;
+        }
+        BeanDefinition definition = beanFactory.getMergedBeanDefinition(beanName);
+        if (definition.getFactoryMethodName() != null) {
+            String owner = definition.getFactoryBeanName() != null ? definition.getFactoryBeanName() : definition.getBeanClassName();
+            return "@Bean " + owner + "." + definition.getFactoryMethodName() + "()";
+        }
+        return definition.getResourceDescription();
+    }
+
+    private static long threadCpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long processCpuNanos() {
+        return OS instanceof com.sun.management.OperatingSystemMXBean
+                ? ((com.sun.management.OperatingSystemMXBean) OS).getProcessCpuTime() : -1;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    private static final class Mark {
+        final String name;
+        final String description;
+        final long nanos;
+        final long threadCpuNanos;
+        final long processCpuNanos;
+
+        Mark(String name, String description, long nanos, long threadCpuNanos, long processCpuNanos) {
+            this.name = name;
+            this.description = description;
+            this.nanos = nanos;
+            this.threadCpuNanos = threadCpuNanos;
+            this.processCpuNanos = processCpuNanos;
+        }
+    }
+
+    private final class BeanDefinitionsLoadedMarker implements BeanFactoryPostProcessor {
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            mark("beanDefinitions", "解析配置类、组件扫描、自动配置、导入 beans.xml、生成 @Configuration 的 CGLIB 子类");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.fei.listenerdemo.startup;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 一次启动的耗时报告，见 StartupProfiler
+ * <p>
+ * phases 按发生顺序排列，beans 按自身耗时从大到小排列，两次发布各导出一份 JSON 即可直接 diff
+ */
+@Getter
+@AllArgsConstructor
+public class StartupReport {
+    // 应用启动完成（running）的时间戳，毫秒
+    private final long finishedAt;
+    // 从 JVM 启动到最后一个阶段结束的总耗时
+    private final double totalMillis;
+    private final List<Phase> phases;
+    private final int beanCount;
+    private final List<BeanTiming> beans;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Phase {
+        private final String name;
+        private final String description;
+        private final double wallMillis;
+        // 主线程（启动流程所在的线程）消耗的 CPU 时间
+        private final double mainThreadCpuMillis;
+        // 整个进程消耗的 CPU 时间，包括 JIT、GC 和其他线程；取不到时为 -1
+        private final double processCpuMillis;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class BeanTiming {
+        private final String name;
+        private final String type;
+        // 定义来源：@Bean 方法、XML 文件、扫描到的类文件等
+        private final String source;
+        // 包括创建它依赖的其他 bean 的时间
+        private final double totalMillis;
+        // 扣掉依赖之后自己的耗时（实例化、注入、初始化回调）
+        private final double selfMillis;
+        private final double selfCpuMillis;
+        private final String thread;
+    }
+}
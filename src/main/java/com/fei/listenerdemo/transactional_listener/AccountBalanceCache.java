@@ -0,0 +1,105 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import com.fei.aop.count_method_call_count.MetricsContributor;
+import com.fei.aop.count_method_call_count.OpenMetricsExporter;
+import com.fei.listenerdemo.warmup.Warmup;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 账户余额的读穿缓存
+ * <p>
+ * - 查询先看缓存，没有再通过 AccountService.loadBalance 查库并放进缓存；不存在的账户不缓存
+ * - 容量有上限，超出后按 Caffeine 的 W-TinyLFU 淘汰：偶尔被查一次的账户挤不掉经常被查的账户
+ * - 失效只发生在 AFTER_COMMIT：转账提交后，按 AccountChangeEvent.changedAccounts 精确删掉涉及的账户；
+ *   回滚的转账收不到 AFTER_COMMIT，缓存里也就不会出现没提交的余额
+ * <p>
+ * 失效必须同步执行（不走 AfterCommitEventDispatcher 的异步分发），这样 transfer 返回时缓存已经干净，
+ * 调用方紧接着查余额就能看到自己的转账。删除只是一次哈希表操作，不会拖慢提交。
+ * <p>
+ * 加载和失效的竞争：查库发生在提交前、放进缓存发生在失效后，缓存里就会留下旧余额。
+ * Caffeine 的 get(key, loader) 在 ConcurrentHashMap.compute 里加载，同一个 key 的 invalidate 会等加载完成再删，
+ * 所以要么加载读到的是提交后的余额，要么加载出的旧值被随后的失效删掉，不会留下旧值。
+ */
+@Component
+public class AccountBalanceCache implements MetricsContributor {
+
+    private final AccountService accountService;
+    private final int preloadSize;
+    private final Cache<String, BigDecimal> cache;
+    private final LongAdder invalidations = new LongAdder();
+
+    public AccountBalanceCache(AccountService accountService, BalanceCacheProperties properties) {
+        this.accountService = accountService;
+        this.preloadSize = properties.getPreloadSize();
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .recordStats();
+        if (properties.getExpireAfterWriteSeconds() > 0) {
+            builder.expireAfterWrite(properties.getExpireAfterWriteSeconds(), TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * 查余额，账户不存在时返回 null
+     */
+    public BigDecimal getBalance(String name) {
+        return cache.get(name, accountService::loadBalance);
+    }
+
+    /**
+     * 预热：按 id 顺序加载前 preload-size 个账户的余额。
+     * 逐个走 get(key, loader) 而不是一次查出来 putAll，这样和转账提交后的失效不会出现上面说的竞争；预加载也计入未命中次数。
+     */
+    @Warmup(name = "balanceCache", dependsOn = "dataSource")
+    public void preload() {
+        if (preloadSize <= 0) {
+            return;
+        }
+        for (String name : accountService.listAccountNames(preloadSize)) {
+            if (Thread.currentThread().isInterrupted()) {
+                // 超过时间预算被中断，已经加载的留着
+                return;
+            }
+            getBalance(name);
+        }
+    }
+
+    /**
+     * 转账提交后让涉及的账户失效，下次查询重新读库
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCommitted(TransactionalEventDemo.AccountChangeEvent event) {
+        if (event.getChangedAccounts().isEmpty()) {
+            return;
+        }
+        cache.invalidateAll(event.getChangedAccounts());
+        invalidations.add(event.getChangedAccounts().size());
+    }
+
+    public BalanceCacheStats getStats() {
+        CacheStats stats = cache.stats();
+        return new BalanceCacheStats(cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount(), invalidations.sum());
+    }
+
+    @Override
+    public void writeMetrics(OpenMetricsExporter.Sink sink) throws IOException {
+        CacheStats stats = cache.stats();
+        sink.gauge("balance_cache_size", "Accounts currently held in the balance cache.", cache.estimatedSize());
+        sink.counter("balance_cache_hits", "Balance lookups served from the cache.", stats.hitCount());
+        sink.counter("balance_cache_misses", "Balance lookups that had to read the database.", stats.missCount());
+        sink.counter("balance_cache_evictions", "Entries evicted for size or expiry.", stats.evictionCount());
+        sink.counter("balance_cache_invalidations", "Entries invalidated after a committed transfer.", invalidations.sum());
+    }
+}
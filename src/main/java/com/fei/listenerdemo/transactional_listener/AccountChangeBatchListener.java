@@ -0,0 +1,20 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import java.util.List;
+
+/**
+ * 事务提交后（AFTER_COMMIT）批量处理 AccountChangeEvent 的监听器
+ * <p>
+ * 和 @TransactionalEventListener(phase = AFTER_COMMIT) 的区别：不在请求线程上执行，而是由 AfterCommitEventDispatcher
+ * 在后台线程上按微批调用，慢的通知、审计写入不会拖慢转账接口。
+ * <p>
+ * 同一个转出账户（AccountChangeEvent#getAccount）的事件总是按提交顺序、在同一个线程上交给监听器；
+ * 账户作为转入方的事件、汇总事件和它不保证先后，见 AfterCommitEventDispatcher。
+ */
+public interface AccountChangeBatchListener {
+
+    /**
+     * @param events 已提交的事件，同一个 lane 里按提交顺序排列；方法返回后列表会被复用，不要保存引用
+     */
+    void onCommitted(List<TransactionalEventDemo.AccountChangeEvent> events);
+}
@@ -0,0 +1,28 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * AccountExportService 的配置，对应 application.yml 中以 account.export 开头的属性
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "account.export")
+public class AccountExportProperties {
+
+    /**
+     * 游标每次从数据库取多少行。
+     * MySQL Connector/J 默认会把整个结果集读进内存，只有两种方式能边读边取：
+     * - Integer.MIN_VALUE（-2147483648）：逐行流式读取（application.yml 里的默认配置）
+     * - 正数，并且连接 URL 带 useCursorFetch=true：服务端游标，每次取这么多行
+     * H2 等其他数据库直接用正数。
+     */
+    private int fetchSize = 1000;
+
+    /**
+     * 一次导出最长允许多久；MVC 异步请求默认 30 秒超时，几百万行的导出不够用，这里单独放宽
+     */
+    private long timeoutMillis = 30 * 60 * 1000;
+}
@@ -0,0 +1,159 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * 账户余额全量导出（对账用），边从游标读边写到输出流，内存占用和行数无关
+ * <p>
+ * - 只读、只进（TYPE_FORWARD_ONLY / CONCUR_READ_ONLY）的游标，按 account.export.fetch-size 分批从数据库取
+ * - 每一行在 RowCallbackHandler 里直接写进一个固定大小的缓冲区，满了就刷给客户端，不攒 List
+ * - 按主键排序并用 WHERE id > afterId 分页（keyset），断线后客户端带上最后收到的完整一行的 id 重新请求即可续传，
+ *   不用 OFFSET，续传的位置再靠后也只是一次索引定位
+ */
+@Service
+public class AccountExportService {
+
+    private static final String EXPORT_SQL = "SELECT id, name, balance FROM transactional_listener_demo_account"
+            + " WHERE id > ? ORDER BY id";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final AccountExportProperties properties;
+
+    public AccountExportService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, AccountExportProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * 导出 id 大于 afterId 的所有账户，写完后不关闭 out
+     *
+     * @return 导出的行数
+     */
+    public long export(OutputStream out, Format format, long afterId) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer, objectMapper);
+        rowWriter.start();
+        long[] rows = new long[1];
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(properties.getFetchSize());
+                statement.setLong(1, afterId);
+                return statement;
+            }, rs -> {
+                try {
+                    rowWriter.write(rs.getLong(1), rs.getString(2), rs.getBigDecimal(3));
+                } catch (IOException e) {
+                    // 客户端断开：抛出去让 JdbcTemplate 关闭游标、归还连接
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        return rows[0];
+    }
+
+    private interface RowWriter {
+        void start() throws IOException;
+
+        void write(long id, String name, BigDecimal balance) throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.write("id,name,balance\n");
+        }
+
+        @Override
+        public void write(long id, String name, BigDecimal balance) throws IOException {
+            writer.write(Long.toString(id));
+            writer.write(',');
+            writeField(name);
+            writer.write(',');
+            writer.write(balance.toPlainString());
+            writer.write('\n');
+        }
+
+        /**
+         * 含逗号、引号、换行的字段按 RFC 4180 加引号，引号写两遍
+         */
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private static final class NdjsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer, ObjectMapper objectMapper) throws IOException {
+            this.writer = writer;
+            // 生成器直接写进同一个 Writer，不自己关闭底层流；行之间的换行自己写，不要默认的空格分隔符。
+            // FLUSH_PASSED_TO_STREAM 默认开着，每行 flush 会一路刷到 gzip 和 servlet 输出流（每行一个 chunk）；
+            // 关掉以后 flush 只把生成器自己的缓冲交给 BufferedWriter，由它攒满 64KB 再往下写
+            this.generator = objectMapper.getFactory().createGenerator(writer)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM)
+                    .setRootValueSeparator(null);
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void write(long id, String name, BigDecimal balance) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", id);
+            generator.writeStringField("name", name);
+            generator.writeNumberField("balance", balance);
+            generator.writeEndObject();
+            // 先把这一行交给 writer，换行才能接在它后面
+            generator.flush();
+            writer.write('\n');
+        }
+    }
+}
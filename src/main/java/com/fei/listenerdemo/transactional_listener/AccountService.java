@@ -1,32 +1,87 @@
 package com.fei.listenerdemo.transactional_listener;
 
+import com.fei.listenerdemo.warmup.Warmup;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 账户服务，演示事务提交和回滚时事件监听效果
+ * <p>
+ * 并发转账不死锁：
+ * - 单笔转账用一条 CASE UPDATE 同时改两行，两行按 name 上唯一索引的顺序加锁，和参数顺序无关，
+ *   transfer(Alice, Bob) 和 transfer(Bob, Alice) 并发也不会互相等待成环
+ * - 批量转账、组提交先用 SELECT ... ORDER BY name FOR UPDATE 按同样的顺序锁住所有相关账户，见 OrderedTransferApplier
+ * - 万一还是碰到死锁或者锁等待超时（比如和其他业务的事务冲突），整个事务按 account.transfer 的配置退避重试
  */
 @Service
 public class AccountService {
 
+    /*
+    一条语句完成扣款和入账：
+    - WHERE name IN (from, to) 走 name 的唯一索引，两行按索引顺序加锁
+    - (name <> from OR balance >= amount) 是透支检查：余额不足时转出账户那一行不满足条件，只会更新 1 行，据此回滚
+     */
+    private static final String TRANSFER_SQL = "UPDATE transactional_listener_demo_account"
+            + " SET balance = CASE WHEN name = ? THEN balance - ? ELSE balance + ? END"
+            + " WHERE name IN (?, ?) AND (name <> ? OR balance >= ?)";
+
     private final JdbcTemplate jdbcTemplate;
     private final ApplicationEventPublisher publisher;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderedTransferApplier transferApplier;
+    private final AccountTransferProperties transferProperties;
+    private final int batchChunkSize;
+    private final LongAdder lockRetries = new LongAdder();
 
-    public AccountService(JdbcTemplate jdbcTemplate, ApplicationEventPublisher publisher) {
+    public AccountService(JdbcTemplate jdbcTemplate, ApplicationEventPublisher publisher,
+                          PlatformTransactionManager transactionManager, AccountTransferProperties transferProperties,
+                          @Value("${account.batch.chunk-size:500}") int batchChunkSize) {
         this.jdbcTemplate = jdbcTemplate;
         this.publisher = publisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transferApplier = new OrderedTransferApplier(jdbcTemplate);
+        this.transferProperties = transferProperties;
+        this.batchChunkSize = batchChunkSize;
     }
 
     /**
      * 转账（正常提交）
+     * <p>
+     * 不再用 @Transactional：死锁时数据库已经把整个事务回滚了，重试必须在事务外面套，所以这里用 TransactionTemplate。
+     * 余额不足、账户不存在时抛 TransferRejectedException，事务回滚；这时事件还没有发布，监听器什么也收不到。
+     * 要看 AFTER_ROLLBACK 的效果用 transferWithRollback。
      */
-    @Transactional
     public void transfer(String from, String to, double amount) {
-        jdbcTemplate.update("UPDATE transactional_listener_demo_account SET balance = balance - ? WHERE name = ?", amount, from);
-        jdbcTemplate.update("UPDATE transactional_listener_demo_account SET balance = balance + ? WHERE name = ?", amount, to);
-        publisher.publishEvent(new TransactionalEventDemo.AccountChangeEvent(this, "转账成功: " + from + " -> " + to + ", 金额: " + amount));
+        String reason = validateArguments(from, to, amount);
+        if (reason != null) {
+            throw new TransferRejectedException(reason);
+        }
+        inTransactionWithRetry(status -> {
+            applyTransfer(from, to, amount);
+            publisher.publishEvent(new TransactionalEventDemo.AccountChangeEvent(this, "转账成功: " + from + " -> " + to + ", 金额: " + amount,
+                    from, Arrays.asList(from, to)));
+            return null;
+        });
     }
 
     /**
@@ -34,10 +89,202 @@ public class AccountService {
      */
     @Transactional
     public void transferWithRollback(String from, String to, double amount) {
-        jdbcTemplate.update("UPDATE transactional_listener_demo_account SET balance = balance - ? WHERE name = ?", amount, from);
-        jdbcTemplate.update("UPDATE transactional_listener_demo_account SET balance = balance + ? WHERE name = ?", amount, to);
+        applyTransfer(from, to, amount);
         publisher.publishEvent(new TransactionalEventDemo.AccountChangeEvent(this, "转账失败: " + from + " -> " + to + ", 金额: " + amount));
         // 强制回滚
         throw new RuntimeException("模拟异常，事务回滚");
     }
-} 
\ No newline at end of file
+
+    private void applyTransfer(String from, String to, double amount) {
+        int updated = jdbcTemplate.update(TRANSFER_SQL, from, amount, amount, from, to, from, amount);
+        if (updated != 2) {
+            throw new TransferRejectedException(explainRejectedTransfer(from, to, amount));
+        }
+    }
+
+    /**
+     * 直接从数据库查余额，账户不存在时返回 null。接口查询走 AccountBalanceCache，这里是它的加载方法。
+     */
+    public BigDecimal loadBalance(String name) {
+        List<BigDecimal> balances = jdbcTemplate.queryForList(
+                "SELECT balance FROM transactional_listener_demo_account WHERE name = ?", BigDecimal.class, name);
+        return balances.isEmpty() ? null : balances.get(0);
+    }
+
+    /**
+     * 按 id 顺序列出前 limit 个账户名，AccountBalanceCache 预热时用
+     */
+    public List<String> listAccountNames(int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT name FROM transactional_listener_demo_account ORDER BY id LIMIT ?", String.class, limit);
+    }
+
+    /**
+     * 预热：连接池在第一次取连接时才真正建立连接，提前在预热线程里付掉这个成本，不让第一个请求来等
+     */
+    @Warmup(name = "dataSource", budgetMillis = 10000)
+    public void warmUpConnection() {
+        jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+    }
+
+    /**
+     * 转账语句没有更新到两行时，查一下具体原因（只在失败时走到，不影响正常路径的往返次数）
+     */
+    private String explainRejectedTransfer(String from, String to, double amount) {
+        Map<String, BigDecimal> balances = new HashMap<>();
+        jdbcTemplate.query("SELECT name, balance FROM transactional_listener_demo_account WHERE name IN (?, ?)",
+                rs -> {
+                    balances.put(rs.getString(1), rs.getBigDecimal(2));
+                }, from, to);
+        if (!balances.containsKey(from)) {
+            return "账户不存在: " + from;
+        }
+        if (!balances.containsKey(to)) {
+            return "账户不存在: " + to;
+        }
+        return "余额不足: " + from + ", 余额: " + balances.get(from) + ", 金额: " + amount;
+    }
+
+    /**
+     * 在新事务里执行，遇到死锁、锁等待超时（PessimisticLockingFailureException）时按指数退避 + 随机抖动重试
+     * <p>
+     * 注意：失败那一次事务里发布的事件会收到 AFTER_ROLLBACK，重试成功后再收到一次 AFTER_COMMIT。
+     */
+    <T> T inTransactionWithRetry(TransactionCallback<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= transferProperties.getMaxAttempts()) {
+                    throw e;
+                }
+                lockRetries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long max = Math.min(transferProperties.getMaxBackoffMillis(),
+                transferProperties.getInitialBackoffMillis() << Math.min(attempt - 1, 20));
+        long millis = max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("转账重试等待被中断", e);
+        }
+    }
+
+    /**
+     * 因为死锁、锁等待超时而重试的次数
+     */
+    public long getLockRetries() {
+        return lockRetries.sum();
+    }
+
+    /**
+     * 批量转账
+     * <p>
+     * 1. 按 account.batch.chunk-size 分块，每个分块一个事务，一个分块失败只回滚这个分块，不影响其他分块
+     * 2. 分块内先按账户顺序锁住相关账户，逐笔检查余额，再按账户汇总净变动额走一次 JDBC batch（见 OrderedTransferApplier）
+     * 3. 每个分块发布一个 AccountChangeEvent（汇总这个分块），代替原来每笔转账一个事件
+     * 4. 参数不合法、账户不存在、余额不足的转账标记为 REJECTED，不影响同一分块里的其他转账
+     * <p>
+     * transfers 是迭代器，调用方可以边读请求边处理（见 AccountController 的 NDJSON 入口），不用先把所有转账读进内存。
+     */
+    public TransferBatchResult transferBatch(Iterator<TransferRequest> transfers) {
+        TransferBatchResult result = new TransferBatchResult();
+        List<TransferRequest> chunk = new ArrayList<>(batchChunkSize);
+        int index = 0;
+        while (transfers.hasNext()) {
+            chunk.add(transfers.next());
+            if (chunk.size() == batchChunkSize) {
+                applyChunk(chunk, index, result);
+                index += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            applyChunk(chunk, index, result);
+        }
+        return result;
+    }
+
+    private void applyChunk(List<TransferRequest> chunk, int baseIndex, TransferBatchResult result) {
+        TransferResult[] results = new TransferResult[chunk.size()];
+        try {
+            String[] rejections = inTransactionWithRetry(status -> {
+                String[] reasons = transferApplier.apply(chunk);
+                int applied = 0;
+                double total = 0;
+                Set<String> changed = new HashSet<>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (reasons[i] == null) {
+                        applied++;
+                        total += chunk.get(i).getAmount();
+                        changed.add(chunk.get(i).getFrom());
+                        changed.add(chunk.get(i).getTo());
+                    }
+                }
+                if (applied > 0) {
+                    publisher.publishEvent(new TransactionalEventDemo.AccountChangeEvent(this,
+                            "批量转账成功: " + applied + " 笔, 合计金额: " + total, null, changed));
+                }
+                return reasons;
+            });
+            for (int i = 0; i < chunk.size(); i++) {
+                results[i] = rejections[i] == null
+                        ? result(baseIndex + i, chunk.get(i), TransferResult.Status.SUCCESS, null)
+                        : result(baseIndex + i, chunk.get(i), TransferResult.Status.REJECTED, rejections[i]);
+            }
+        } catch (RuntimeException e) {
+            for (int i = 0; i < chunk.size(); i++) {
+                results[i] = result(baseIndex + i, chunk.get(i), TransferResult.Status.FAILED, "所在分块回滚: " + e.getMessage());
+            }
+        }
+        for (TransferResult transferResult : results) {
+            result.add(transferResult);
+        }
+        result.chunkApplied();
+    }
+
+    /**
+     * 按账户顺序加锁执行一批转账，见 OrderedTransferApplier。必须在事务里调用。
+     *
+     * @return 和 transfers 一一对应：null 表示已执行，否则是不能执行的原因
+     */
+    String[] applyLocked(List<TransferRequest> transfers) {
+        return transferApplier.apply(transfers);
+    }
+
+    /**
+     * 不用查数据库就能判断的参数问题
+     *
+     * @return 不能执行的原因，可以执行时返回 null
+     */
+    static String validateArguments(String from, String to, double amount) {
+        if (!(amount > 0)) {
+            return "金额必须大于 0";
+        }
+        if (from == null || to == null) {
+            return "转出和转入账户不能为空";
+        }
+        if (from.equals(to)) {
+            return "转出和转入账户不能相同";
+        }
+        return null;
+    }
+
+    /**
+     * 和 transfer 里的事件消息保持同一个格式
+     */
+    static String successMessage(TransferRequest transfer) {
+        return "转账成功: " + transfer.getFrom() + " -> " + transfer.getTo() + ", 金额: " + transfer.getAmount();
+    }
+
+    private static TransferResult result(int index, TransferRequest transfer, TransferResult.Status status,
+                                         String message) {
+        return new TransferResult(index, transfer.getFrom(), transfer.getTo(), transfer.getAmount(), status, message);
+    }
+}
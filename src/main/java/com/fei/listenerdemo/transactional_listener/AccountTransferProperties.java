@@ -0,0 +1,29 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 转账事务遇到死锁、锁等待超时时的重试配置，对应 application.yml 中以 account.transfer 开头的属性
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "account.transfer")
+public class AccountTransferProperties {
+
+    /**
+     * 最多执行几次（含第一次）
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * 第一次重试前的退避时间，之后每次翻倍（带随机抖动）
+     */
+    private long initialBackoffMillis = 2;
+
+    /**
+     * 退避时间上限
+     */
+    private long maxBackoffMillis = 50;
+}
@@ -0,0 +1,30 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * AfterCommitEventDispatcher 的配置，对应 application.yml 中以 account.events.after-commit 开头的属性
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "account.events.after-commit")
+public class AfterCommitDispatchProperties {
+
+    /**
+     * 分发线程数；每个线程一个队列，同一个转出账户（AccountChangeEvent#getAccount）的事件总是进同一个队列；
+     * 设为 1 时所有事件按提交顺序分发，转入方、汇总事件也有序
+     */
+    private int lanes = 2;
+
+    /**
+     * 每个队列最多积压多少个事件，满了之后提交事件的线程会等待（背压），而不是丢事件
+     */
+    private int queueCapacity = 1024;
+
+    /**
+     * 一次交给监听器的最多事件数
+     */
+    private int maxBatchSize = 64;
+}
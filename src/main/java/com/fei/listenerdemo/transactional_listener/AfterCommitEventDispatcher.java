@@ -0,0 +1,201 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import com.fei.aop.count_method_call_count.LatencyHistogram;
+import com.fei.aop.count_method_call_count.MetricsContributor;
+import com.fei.aop.count_method_call_count.OpenMetricsExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * AFTER_COMMIT 事件的异步、批量分发
+ * <p>
+ * 原来 AFTER_COMMIT 监听器在提交事务的线程上同步执行，慢的通知、审计直接算进转账接口的耗时。现在：
+ * 1. 这里的 @TransactionalEventListener(AFTER_COMMIT) 只负责把事件放进队列，马上返回
+ * 2. 按 AccountChangeEvent#getAccount（转出账户）的哈希选队列（lane），每个 lane 一个线程，同一个转出账户的事件顺序不变；
+ *    只保证转出账户：账户作为转入方的事件按对方的转出账户分到别的 lane，getAccount 为 null 的汇总事件都在 lane 0，
+ *    它们和这个账户自己转出的事件之间先后不保证。监听器需要每个相关账户（getChangedAccounts）都有序时把 lanes 设为 1
+ * 3. lane 线程一次取出积压的多个事件（最多 max-batch-size 个），作为一个微批依次交给每个 AccountChangeBatchListener
+ * 4. 队列有界，满了提交线程会阻塞等待（背压），宁可让写入变慢也不丢已经提交的事件
+ * 5. 队列深度、分发延迟（提交到交给监听器的时间）、背压次数、监听器异常数通过 /metrics 暴露
+ * 6. 停机时 lane 线程把队列里的事件分发完再退出；之后还在提交的事务（正在处理的请求、组提交最后几批）
+ *    改为在提交线程上直接交给监听器，不会放进没人读的队列
+ * <p>
+ * BEFORE_COMMIT 不受影响，还是在事务里同步执行（它要能让事务回滚）；AFTER_ROLLBACK / AFTER_COMPLETION 也保持原样。
+ */
+@Slf4j
+@Component
+public class AfterCommitEventDispatcher implements MetricsContributor {
+
+    private final AfterCommitDispatchProperties properties;
+    private final ObjectProvider<AccountChangeBatchListener> listenerProvider;
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+    private final LongAdder listenerErrors = new LongAdder();
+    private List<AccountChangeBatchListener> listeners;
+    private Lane[] lanes;
+    private volatile boolean running = true;
+
+    public AfterCommitEventDispatcher(AfterCommitDispatchProperties properties,
+                                      ObjectProvider<AccountChangeBatchListener> listenerProvider) {
+        this.properties = properties;
+        this.listenerProvider = listenerProvider;
+    }
+
+    @PostConstruct
+    public void start() {
+        listeners = listenerProvider.orderedStream().collect(Collectors.toList());
+        lanes = new Lane[properties.getLanes()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i);
+            lanes[i].start();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAfterCommit(TransactionalEventDemo.AccountChangeEvent event) throws InterruptedException {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        Lane lane = lanes[laneIndex(event.getAccount())];
+        Pending pending = new Pending(event, System.nanoTime());
+        if (!running) {
+            dispatchAfterShutdown(lane, pending);
+            return;
+        }
+        if (!lane.queue.offer(pending)) {
+            backpressureWaits.increment();
+            lane.queue.put(pending);
+        }
+        if (!running && lane.queue.remove(pending)) {
+            // 检查 running 和放进队列之间 shutdown 了，lane 线程可能已经退出；remove 失败说明已经被 lane 取走
+            dispatchAfterShutdown(lane, pending);
+        }
+    }
+
+    /**
+     * 停机后在提交线程上直接分发：先等这个 lane 把停机前的事件分发完，同一个转出账户的顺序不变
+     */
+    private void dispatchAfterShutdown(Lane lane, Pending pending) throws InterruptedException {
+        if (Thread.currentThread() != lane) {
+            lane.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        List<TransactionalEventDemo.AccountChangeEvent> events = Collections.singletonList(pending.event);
+        lag.record(System.nanoTime() - pending.enqueuedNanos);
+        deliver(events);
+        dispatched.increment();
+    }
+
+    private void deliver(List<TransactionalEventDemo.AccountChangeEvent> events) {
+        for (AccountChangeBatchListener listener : listeners) {
+            try {
+                listener.onCommitted(events);
+            } catch (RuntimeException | Error e) {
+                // 一个监听器出错不影响其他监听器，也不影响后面的批次；
+                // Error 也要接住，lane 线程一旦退出，队列满了之后所有提交事务的线程都会卡在 put 上
+                listenerErrors.increment();
+                log.warn("AFTER_COMMIT 批量监听器 {} 处理失败", listener.getClass().getName(), e);
+            }
+        }
+    }
+
+    private int laneIndex(String account) {
+        if (account == null) {
+            return 0;
+        }
+        int h = account.hashCode();
+        return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    @Override
+    public void writeMetrics(OpenMetricsExporter.Sink sink) throws IOException {
+        sink.gauge("after_commit_queue_depth", "AccountChangeEvents waiting for AFTER_COMMIT dispatch.", getQueueDepth());
+        sink.counter("after_commit_dispatched_events", "AccountChangeEvents handed to batch listeners.", dispatched.sum());
+        sink.counter("after_commit_backpressure_waits", "Commits that had to wait for queue space.", backpressureWaits.sum());
+        sink.counter("after_commit_listener_errors", "Exceptions thrown by batch listeners.", listenerErrors.sum());
+        sink.durationSummary("after_commit_dispatch_lag_seconds", "Time from commit to dispatch.", lag);
+    }
+
+    /**
+     * lane 线程把队列里已有的事件分发完再退出，之后的事件在提交线程上直接分发；
+     * GroupCommitTransferQueue 通过 @DependsOn 保证在这之前把剩下的批次提交完
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private final class Lane extends Thread {
+        final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+
+        Lane(int index) {
+            super("after-commit-" + index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<Pending> drained = new ArrayList<>(properties.getMaxBatchSize());
+            List<TransactionalEventDemo.AccountChangeEvent> events = new ArrayList<>(properties.getMaxBatchSize());
+            List<TransactionalEventDemo.AccountChangeEvent> view = Collections.unmodifiableList(events);
+            while (running || !queue.isEmpty()) {
+                try {
+                    Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    drained.add(first);
+                    queue.drainTo(drained, properties.getMaxBatchSize() - 1);
+                    long now = System.nanoTime();
+                    for (Pending pending : drained) {
+                        lag.record(now - pending.enqueuedNanos);
+                        events.add(pending.event);
+                    }
+                    deliver(view);
+                    dispatched.add(events.size());
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    drained.clear();
+                    events.clear();
+                }
+            }
+        }
+    }
+
+    private static final class Pending {
+        final TransactionalEventDemo.AccountChangeEvent event;
+        final long enqueuedNanos;
+
+        Pending(TransactionalEventDemo.AccountChangeEvent event, long enqueuedNanos) {
+            this.event = event;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * AccountBalanceCache 的配置，对应 application.yml 中以 account.balance-cache 开头的属性
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "account.balance-cache")
+public class BalanceCacheProperties {
+
+    /**
+     * 最多缓存多少个账户的余额，超出后按 W-TinyLFU（访问频率 + 最近访问）淘汰
+     */
+    private long maximumSize = 10000;
+
+    /**
+     * 写入后多久过期；正常情况下靠提交后失效保证不读到旧值，过期只是兜底（比如有人绕过应用直接改了表）。
+     * 0 表示不过期。
+     */
+    private long expireAfterWriteSeconds = 300;
+
+    /**
+     * 启动预热时按 id 顺序预先加载多少个账户的余额，0 表示不预热
+     */
+    private int preloadSize = 1000;
+}
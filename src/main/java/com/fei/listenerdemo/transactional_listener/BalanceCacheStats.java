@@ -0,0 +1,20 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 余额缓存的统计信息，见 AccountBalanceCache
+ */
+@Getter
+@AllArgsConstructor
+public class BalanceCacheStats {
+    private final long size;
+    private final long hits;
+    private final long misses;
+    private final double hitRate;
+    // 因容量或过期被淘汰的条目数
+    private final long evictions;
+    // 转账提交后被删掉的条目数
+    private final long invalidations;
+}
@@ -0,0 +1,34 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 转账组提交（GroupCommitTransferQueue）的配置，对应 application.yml 中以 account.group-commit 开头的属性
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "account.group-commit")
+public class GroupCommitProperties {
+
+    /**
+     * 是否开启组提交，默认关闭，/account/transfer 还是每笔一个事务
+     */
+    private boolean enabled = false;
+
+    /**
+     * 一个事务最多合并多少笔转账
+     */
+    private int maxBatchSize = 200;
+
+    /**
+     * 从一批里第一笔转账到达开始，最多再等多久就提交
+     */
+    private long maxDelayMillis = 5;
+
+    /**
+     * 排队等待提交的转账上限，满了直接拒绝，避免数据库变慢时请求无限堆积
+     */
+    private int queueCapacity = 10000;
+}
@@ -0,0 +1,190 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 转账组提交：把一段时间内到达的多笔转账合并进一个事务，分摊每次提交的刷盘开销
+ * <p>
+ * 1. 调用方 submit 之后拿到一个 CompletableFuture，转账先进有界队列，队列满了直接拒绝
+ * 2. 单个提交线程从队列里取，凑够 max-batch-size 笔或者从第一笔开始等了 max-delay-millis 就开一个事务提交
+ * 3. 只有这一批的事务真正提交之后，这一批所有的 future 才会完成；事务失败则这一批全部异常完成
+ * 4. 批事务里按账户顺序加锁、逐笔检查余额（见 OrderedTransferApplier），遇到死锁、锁等待超时整批退避重试
+ * <p>
+ * 事件语义和单笔转账保持一致（见 TransactionalEventDemo）：
+ * - 执行成功的转账在批事务里各发布一个 AccountChangeEvent，BEFORE_COMMIT / AFTER_COMMIT / AFTER_COMPLETION 每笔各触发一次；
+ *   批事务回滚时这些事件收到的是 AFTER_ROLLBACK
+ * - 参数不合法、账户不存在、余额不足的转账不会改动数据，也不发布事件，future 以 TransferRejectedException 异常完成；
+ *   和 AccountService.transfer 被拒绝时一样，监听器什么也收不到
+ * - 注意 BEFORE_COMMIT 监听器跑在批事务里，它抛异常会让整批回滚
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.group-commit.enabled", havingValue = "true")
+// 停机时先销毁这里（把剩下的批次提交完），再销毁 AFTER_COMMIT 的分发器
+@DependsOn("afterCommitEventDispatcher")
+public class GroupCommitTransferQueue {
+
+    private final AccountService accountService;
+    private final ApplicationEventPublisher publisher;
+    private final GroupCommitProperties properties;
+    private final BlockingQueue<PendingTransfer> queue;
+    private volatile boolean running = true;
+    private Thread committer;
+
+    public GroupCommitTransferQueue(AccountService accountService, ApplicationEventPublisher publisher,
+                                    GroupCommitProperties properties) {
+        this.accountService = accountService;
+        this.publisher = publisher;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    }
+
+    @PostConstruct
+    public void start() {
+        committer = new Thread(this::run, "transfer-group-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * @return 所在批次提交后正常完成；转账被拒绝或者批次回滚时异常完成
+     */
+    public CompletableFuture<Void> submit(String from, String to, double amount) {
+        PendingTransfer pending = new PendingTransfer(new TransferRequest(from, to, amount));
+        if (!running) {
+            pending.future.completeExceptionally(new RejectedExecutionException("组提交队列已关闭"));
+        } else if (!queue.offer(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException("组提交队列已满: " + properties.getQueueCapacity()));
+        } else if (!running && queue.remove(pending)) {
+            // 检查 running 和 offer 之间 shutdown 了，提交线程可能已经退出，不会再来取；
+            // remove 失败说明已经被提交线程取走，由它完成 future
+            pending.future.completeExceptionally(new RejectedExecutionException("组提交队列已关闭"));
+        }
+        return pending.future;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void run() {
+        try {
+            commitUntilStopped();
+        } finally {
+            // 不管是正常退出、被中断还是意外退出，之后都没有人来取了：先让 submit 拒绝新的转账，再把剩下的全部拒绝
+            running = false;
+            List<PendingTransfer> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            rejectAll(remaining);
+        }
+    }
+
+    private void commitUntilStopped() {
+        List<PendingTransfer> batch = new ArrayList<>(properties.getMaxBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingTransfer first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getMaxDelayMillis());
+                while (batch.size() < properties.getMaxBatchSize()) {
+                    // 先把已经排着的一次性拿走，不够再等到截止时间
+                    if (queue.drainTo(batch, properties.getMaxBatchSize() - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingTransfer next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejectAll(batch);
+                return;
+            } catch (RuntimeException | Error e) {
+                // Error 也要接住（比如 BEFORE_COMMIT 监听器里的 AssertionError、StackOverflowError），
+                // 提交线程一旦退出，这一批的调用方会一直等下去，后面排队的转账也没有人提交
+                log.warn("组提交批次失败，这一批 {} 笔转账全部失败", batch.size(), e);
+                failAll(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static void failAll(List<PendingTransfer> transfers, Throwable cause) {
+        for (PendingTransfer pending : transfers) {
+            pending.future.completeExceptionally(cause);
+        }
+    }
+
+    private static void rejectAll(List<PendingTransfer> transfers) {
+        for (PendingTransfer pending : transfers) {
+            pending.future.completeExceptionally(new RejectedExecutionException("组提交队列已关闭"));
+        }
+    }
+
+    private void commit(List<PendingTransfer> batch) {
+        List<TransferRequest> requests = new ArrayList<>(batch.size());
+        for (PendingTransfer pending : batch) {
+            requests.add(pending.request);
+        }
+        // 批事务失败（包括 Error）时由 commitUntilStopped 让这一批全部异常完成
+        String[] rejections = accountService.inTransactionWithRetry(status -> {
+            String[] reasons = accountService.applyLocked(requests);
+            for (int i = 0; i < requests.size(); i++) {
+                if (reasons[i] == null) {
+                    publisher.publishEvent(new TransactionalEventDemo.AccountChangeEvent(accountService,
+                            AccountService.successMessage(requests.get(i)), requests.get(i).getFrom(),
+                            Arrays.asList(requests.get(i).getFrom(), requests.get(i).getTo())));
+                }
+            }
+            return reasons;
+        });
+        for (int i = 0; i < batch.size(); i++) {
+            if (rejections[i] == null) {
+                batch.get(i).future.complete(null);
+            } else {
+                batch.get(i).future.completeExceptionally(new TransferRejectedException(rejections[i]));
+            }
+        }
+    }
+
+    /**
+     * 停止接收新的转账，把已经排队的提交完再退出
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        committer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    private static final class PendingTransfer {
+        final TransferRequest request;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingTransfer(TransferRequest request) {
+            this.request = request;
+        }
+    }
+}
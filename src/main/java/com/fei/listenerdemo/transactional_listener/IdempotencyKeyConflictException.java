@@ -0,0 +1,11 @@
+package com.fei.listenerdemo.transactional_listener;
+
+/**
+ * 同一个幂等键被用在了参数不同的另一笔转账上
+ */
+public class IdempotencyKeyConflictException extends RuntimeException {
+
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,29 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * TransferIdempotencyStore 的配置，对应 application.yml 中以 account.idempotency 开头的属性
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "account.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * 同一个幂等键在多长时间内重复提交只返回第一次的结果
+     */
+    private long ttlSeconds = 600;
+
+    /**
+     * 最多记住多少个幂等键，超出后从最早的已完成的键开始淘汰；还在执行的不淘汰，全是执行中的键时拒绝新键
+     */
+    private int maxEntries = 100000;
+
+    /**
+     * 分段数（会向上取整到 2 的幂），每段一把锁，不同的键大概率落在不同的段上，互不等待
+     */
+    private int stripes = 64;
+}
@@ -0,0 +1,103 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 在一个事务里执行一批转账（批量接口的一个分块、组提交的一批）
+ * <p>
+ * 1. 一条 SELECT ... ORDER BY name FOR UPDATE 按账户名顺序锁住这批转账涉及的所有账户行，
+ *    不同事务加锁顺序一致，批和批之间、批和单笔转账之间不会互相死锁
+ * 2. 在内存里按请求顺序逐笔扣减余额，余额不足、账户不存在的转账直接判为不能执行，不影响同一批里的其他转账
+ * 3. 按账户汇总净变动额，每个账户一行，按账户名顺序一次 JDBC batch 写回
+ * <p>
+ * 必须在事务里调用。
+ */
+final class OrderedTransferApplier {
+
+    private static final String ADJUST_BALANCE_SQL =
+            "UPDATE transactional_listener_demo_account SET balance = balance + ? WHERE name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    OrderedTransferApplier(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return 和 transfers 一一对应：null 表示已执行，否则是不能执行的原因
+     */
+    String[] apply(List<TransferRequest> transfers) {
+        String[] rejections = new String[transfers.size()];
+        TreeSet<String> names = new TreeSet<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRequest transfer = transfers.get(i);
+            rejections[i] = AccountService.validateArguments(transfer.getFrom(), transfer.getTo(), transfer.getAmount());
+            if (rejections[i] == null) {
+                names.add(transfer.getFrom());
+                names.add(transfer.getTo());
+            }
+        }
+        if (names.isEmpty()) {
+            return rejections;
+        }
+
+        Map<String, BigDecimal> balances = lockBalances(names);
+        Map<String, BigDecimal> deltas = new TreeMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            if (rejections[i] != null) {
+                continue;
+            }
+            TransferRequest transfer = transfers.get(i);
+            BigDecimal fromBalance = balances.get(transfer.getFrom());
+            BigDecimal toBalance = balances.get(transfer.getTo());
+            BigDecimal amount = BigDecimal.valueOf(transfer.getAmount());
+            if (fromBalance == null) {
+                rejections[i] = "账户不存在: " + transfer.getFrom();
+            } else if (toBalance == null) {
+                rejections[i] = "账户不存在: " + transfer.getTo();
+            } else if (fromBalance.compareTo(amount) < 0) {
+                rejections[i] = "余额不足: " + transfer.getFrom();
+            } else {
+                balances.put(transfer.getFrom(), fromBalance.subtract(amount));
+                balances.put(transfer.getTo(), toBalance.add(amount));
+                deltas.merge(transfer.getFrom(), amount.negate(), BigDecimal::add);
+                deltas.merge(transfer.getTo(), amount, BigDecimal::add);
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        for (Map.Entry<String, BigDecimal> delta : deltas.entrySet()) {
+            if (delta.getValue().signum() != 0) {
+                rows.add(new Object[]{delta.getValue(), delta.getKey()});
+            }
+        }
+        if (!rows.isEmpty()) {
+            for (int count : jdbcTemplate.batchUpdate(ADJUST_BALANCE_SQL, rows)) {
+                if (count != 1 && count != Statement.SUCCESS_NO_INFO) {
+                    throw new IllegalStateException("账户余额更新行数异常: " + count);
+                }
+            }
+        }
+        return rejections;
+    }
+
+    private Map<String, BigDecimal> lockBalances(TreeSet<String> names) {
+        String placeholders = String.join(",", Collections.nCopies(names.size(), "?"));
+        Map<String, BigDecimal> balances = new TreeMap<>();
+        jdbcTemplate.query("SELECT name, balance FROM transactional_listener_demo_account WHERE name IN ("
+                        + placeholders + ") ORDER BY name FOR UPDATE",
+                rs -> {
+                    balances.put(rs.getString(1), rs.getBigDecimal(2));
+                }, names.toArray());
+        return balances;
+    }
+}
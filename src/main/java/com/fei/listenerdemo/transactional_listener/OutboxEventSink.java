@@ -0,0 +1,14 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import java.util.List;
+
+/**
+ * outbox 消息的投递目标（消息队列、下游服务等），由 OutboxRelay 按页调用
+ * <p>
+ * 投递是至少一次：deliver 成功之后、删除 outbox 行的事务提交之前如果进程挂了，这一页会被再次投递，
+ * 下游需要按 OutboxMessage#getId 去重。deliver 抛异常时这一页不会被删除，下次轮询重试。
+ */
+public interface OutboxEventSink {
+
+    void deliver(List<OutboxMessage> messages);
+}
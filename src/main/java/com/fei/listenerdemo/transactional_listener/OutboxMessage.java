@@ -0,0 +1,17 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * outbox 表里的一行，也就是一个已经提交、等待投递的 AccountChangeEvent
+ */
+@Getter
+@AllArgsConstructor
+public class OutboxMessage {
+    private final long id;
+    private final String account;
+    private final String msg;
+    // 写入 outbox 的时间（事务提交前），用来算端到端延迟
+    private final long createdAtMillis;
+}
@@ -0,0 +1,34 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 事务 outbox（TransactionalOutbox / OutboxRelay）的配置，对应 application.yml 中以 account.outbox 开头的属性
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "account.outbox")
+public class OutboxProperties {
+
+    /**
+     * 是否把 AccountChangeEvent 写进 outbox 表并由 relay 投递；relay 需要 SKIP LOCKED（MySQL 8.0+），所以默认关闭
+     */
+    private boolean enabled = false;
+
+    /**
+     * 每个节点的 relay 线程数；多个线程、多个节点之间靠 SKIP LOCKED 各自认领不同的行
+     */
+    private int relayThreads = 1;
+
+    /**
+     * relay 一次认领、投递、删除多少行
+     */
+    private int pageSize = 500;
+
+    /**
+     * outbox 里没有积压（一页没取满）时，下次轮询前等多久
+     */
+    private long pollIntervalMillis = 200;
+}
@@ -0,0 +1,178 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import com.fei.aop.count_method_call_count.LatencyHistogram;
+import com.fei.aop.count_method_call_count.MetricsContributor;
+import com.fei.aop.count_method_call_count.OpenMetricsExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 事务 outbox 的投递端：把 outbox 表里已提交的事件按页投递给 OutboxEventSink，投递成功后批量删除
+ * <p>
+ * 每个 relay 线程循环执行：
+ * 1. 开事务，SELECT ... ORDER BY id LIMIT page-size FOR UPDATE SKIP LOCKED 认领一页
+ *    —— 别的线程、别的节点正在处理的行会被跳过，所以多个节点可以并行消化 outbox，互不阻塞
+ * 2. 整页交给 OutboxEventSink
+ * 3. DELETE ... WHERE id IN (...) 一次删掉这一页，提交事务
+ * 4. 一页取满说明还有积压，马上取下一页；否则等 poll-interval-millis
+ * <p>
+ * 顺序：同一页内按 id（也就是写入顺序）投递；多个 relay 并行时页与页之间不保证顺序。
+ * 需要数据库支持 SKIP LOCKED（MySQL 8.0+）：启动时先试一次认领语句，数据库不认识这个语法时只打一条警告，不启动 relay，
+ * 免得每次轮询都报一遍同样的错。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.outbox.enabled", havingValue = "true")
+public class OutboxRelay implements MetricsContributor {
+
+    private static final String CLAIM_SQL = "SELECT id, account, msg, created_at_millis"
+            + " FROM transactional_listener_demo_outbox ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxProperties properties;
+    private final OutboxEventSink sink;
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final LongAdder relayed = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                       OutboxProperties properties, ObjectProvider<OutboxEventSink> sink) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.sink = sink.getIfAvailable(() -> messages ->
+                log.debug("outbox 投递 {} 条消息，id {} ~ {}", messages.size(),
+                        messages.get(0).getId(), messages.get(messages.size() - 1).getId()));
+    }
+
+    /**
+     * 等数据源初始化（schema.sql）完成、应用就绪后再开始轮询
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (!supportsSkipLocked()) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < properties.getRelayThreads(); i++) {
+            Thread worker = new Thread(this::run, "outbox-relay-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * 只有语法错误才算不支持；连不上数据库之类的临时错误照常启动，由轮询重试
+     */
+    private boolean supportsSkipLocked() {
+        try {
+            transactionTemplate.execute(status -> jdbcTemplate.queryForList(CLAIM_SQL, 0));
+            return true;
+        } catch (BadSqlGrammarException e) {
+            log.warn("数据库不支持 SELECT ... FOR UPDATE SKIP LOCKED（需要 MySQL 8.0+），outbox relay 不启动，"
+                    + "outbox 表里的事件不会被投递和清理；这个数据库上请关闭 account.outbox.enabled: {}", e.getMostSpecificCause().toString());
+            return false;
+        } catch (DataAccessException e) {
+            log.warn("outbox relay 启动前检查 SKIP LOCKED 失败，照常启动，轮询时重试", e);
+            return true;
+        }
+    }
+
+    private void run() {
+        while (running) {
+            int relayedInPage;
+            try {
+                relayedInPage = relayPage();
+            } catch (RuntimeException e) {
+                errors.increment();
+                log.warn("outbox 投递失败，稍后重试", e);
+                relayedInPage = 0;
+            }
+            if (relayedInPage < properties.getPageSize()) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(properties.getPollIntervalMillis());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 这一页投递了多少条
+     */
+    int relayPage() {
+        Integer count = transactionTemplate.execute(status -> {
+            List<OutboxMessage> page = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new OutboxMessage(
+                    rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4)), properties.getPageSize());
+            if (page.isEmpty()) {
+                return 0;
+            }
+            sink.deliver(Collections.unmodifiableList(page));
+
+            Object[] ids = new Object[page.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = page.get(i).getId();
+            }
+            jdbcTemplate.update("DELETE FROM transactional_listener_demo_outbox WHERE id IN ("
+                    + String.join(",", Collections.nCopies(ids.length, "?")) + ")", ids);
+
+            long now = System.currentTimeMillis();
+            for (OutboxMessage message : page) {
+                lag.record(TimeUnit.MILLISECONDS.toNanos(Math.max(0, now - message.getCreatedAtMillis())));
+            }
+            return page.size();
+        });
+        relayed.add(count);
+        if (count > 0) {
+            pages.increment();
+        }
+        return count;
+    }
+
+    public long getRelayedCount() {
+        return relayed.sum();
+    }
+
+    @Override
+    public void writeMetrics(OpenMetricsExporter.Sink sink) throws IOException {
+        sink.counter("outbox_relayed_messages", "Outbox rows delivered and deleted.", relayed.sum());
+        sink.counter("outbox_relay_pages", "Non-empty pages claimed by the relay.", pages.sum());
+        sink.counter("outbox_relay_errors", "Failed relay attempts.", errors.sum());
+        sink.durationSummary("outbox_end_to_end_lag_seconds", "Time from outbox insert to delivery.", lag);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+}
@@ -6,6 +6,10 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionalEventListener;
 import org.springframework.transaction.event.TransactionPhase;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 【Demo说明】
  * <p>
@@ -29,7 +33,7 @@ import org.springframework.transaction.event.TransactionPhase;
  *      GET <a href="http://localhost:8888/account/transferRollback?from=Alice&to=Bob&amount=100">...</a>
  * 3. 观察控制台输出，四种phase的监听器会在不同事务阶段打印日志：
  *    - BEFORE_COMMIT：事务提交前
- *    - AFTER_COMMIT：事务提交后（仅提交时触发）
+ *    - AFTER_COMMIT：事务提交后（仅提交时触发），由 AfterCommitEventDispatcher 异步、批量分发，打印在 after-commit-N 线程上
  *    - AFTER_ROLLBACK：事务回滚后
  *    - AFTER_COMPLETION：事务完成后（无论提交还是回滚都会触发）
  * <p>
@@ -60,24 +64,41 @@ public class TransactionalEventDemo {
     @Getter
     public static class AccountChangeEvent extends ApplicationEvent {
         private final String msg;
+        // 事件归属的账户（转账的转出账户），AFTER_COMMIT 异步分发时只按它保证顺序；汇总类事件为 null
+        private final String account;
+        // 余额发生变化的所有账户（转账的双方、批量转账一个分块涉及的账户），提交后据此让余额缓存失效
+        private final Collection<String> changedAccounts;
         public AccountChangeEvent(Object source, String msg) {
+            this(source, msg, null);
+        }
+        public AccountChangeEvent(Object source, String msg, String account) {
+            this(source, msg, account, Collections.emptyList());
+        }
+        public AccountChangeEvent(Object source, String msg, String account, Collection<String> changedAccounts) {
             super(source);
             this.msg = msg;
+            this.account = account;
+            this.changedAccounts = changedAccounts;
         }
     }
 
     /**
      * 监听器组件
+     * <p>
+     * AFTER_COMMIT 不再用 @TransactionalEventListener 同步执行，而是实现 AccountChangeBatchListener，
+     * 由 AfterCommitEventDispatcher 在后台线程上按微批调用，不占用转账请求的耗时。
      */
     @Component
-    public static class AccountChangeEventListener {
+    public static class AccountChangeEventListener implements AccountChangeBatchListener {
         @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
         public void beforeCommit(AccountChangeEvent event) {
             System.out.println("【BEFORE_COMMIT】事务提交前收到事件: " + event.getMsg());
         }
-        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-        public void afterCommit(AccountChangeEvent event) {
-            System.out.println("【AFTER_COMMIT】事务提交后收到事件: " + event.getMsg());
+        @Override
+        public void onCommitted(List<AccountChangeEvent> events) {
+            for (AccountChangeEvent event : events) {
+                System.out.println("【AFTER_COMMIT】事务提交后收到事件: " + event.getMsg());
+            }
         }
         @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
         public void afterRollback(AccountChangeEvent event) {
@@ -0,0 +1,66 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 事务 outbox 的写入端：AccountChangeEvent 和余额变更在同一个事务里落库
+ * <p>
+ * AFTER_COMMIT 监听器在提交之后才执行，提交和监听器之间进程挂了事件就丢了；写进 outbox 表则和余额变更同生共死。
+ * 1. 事务里每发布一个事件，只是追加到这个事务自己的缓冲区，不访问数据库
+ * 2. 事务提交前（beforeCommit）把缓冲区一次 batch insert 进 outbox 表，一批转账（组提交、批量接口）也只有一次往返
+ * 3. 事务回滚时缓冲区直接丢弃，outbox 里不会出现没生效的事件
+ * <p>
+ * 不在事务里发布的事件不写 outbox。投递见 OutboxRelay。
+ */
+@Component
+@ConditionalOnProperty(name = "account.outbox.enabled", havingValue = "true")
+public class TransactionalOutbox {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO transactional_listener_demo_outbox (account, msg, created_at_millis) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransactionalOutbox(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener
+    public void onAccountChange(TransactionalEventDemo.AccountChangeEvent event) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        Buffer buffer = (Buffer) TransactionSynchronizationManager.getResource(this);
+        if (buffer == null) {
+            buffer = new Buffer();
+            TransactionSynchronizationManager.bindResource(this, buffer);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        }
+        buffer.rows.add(new Object[]{event.getAccount(), event.getMsg(), System.currentTimeMillis()});
+    }
+
+    /**
+     * 一个事务里发布的所有事件
+     */
+    private final class Buffer implements TransactionSynchronization {
+        final List<Object[]> rows = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransactionalOutbox.this);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * POST /account/transfers 的响应：汇总数 + 每笔转账的结果（顺序和请求一致）
+ */
+@Getter
+public class TransferBatchResult {
+
+    private int succeeded;
+    private int rejected;
+    private int failed;
+    private int chunks;
+    private final List<TransferResult> results = new ArrayList<>();
+
+    void add(TransferResult result) {
+        results.add(result);
+        switch (result.getStatus()) {
+            case SUCCESS:
+                succeeded++;
+                break;
+            case REJECTED:
+                rejected++;
+                break;
+            default:
+                failed++;
+        }
+    }
+
+    void chunkApplied() {
+        chunks++;
+    }
+}
@@ -0,0 +1,188 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import com.fei.aop.count_method_call_count.MetricsContributor;
+import com.fei.aop.count_method_call_count.OpenMetricsExporter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 转账幂等键的去重表（只在内存里，单节点有效）
+ * <p>
+ * 同一个幂等键：
+ * - 第一次提交正常执行转账，结果（包括“余额不足”这类业务失败）在 ttl-seconds 内被记住，之后的重试直接返回这个结果，不会再转一次
+ * - 第一次还没执行完时到达的重复请求不自己开事务，而是等第一次的结果（拿到的是同一个 CompletableFuture，不占请求线程）
+ * - 第一次因为异常（数据库错误、重试耗尽等，事务已回滚）失败时忘掉这个键，客户端重试会重新执行
+ * - 参数不同的转账用了同一个键时抛 IdempotencyKeyConflictException
+ * <p>
+ * 结构：按键的 hash 分成若干段，每段一个按插入顺序排列的 LinkedHashMap，由这一段自己的锁保护。
+ * 所有键的存活时间相同，所以每段最早插入的就是最早过期的：每次访问从头部清掉过期的，超过容量时从头部淘汰，
+ * 查找、插入、清理都是均摊 O(1)，不同段之间没有共享的锁。
+ * 还在执行的键不会被淘汰（淘汰了重试就会再转一次账）：超过容量时跳过它们，只淘汰已经有结果的；
+ * 一段里全是还在执行的键时拒绝新键（RejectedExecutionException），客户端稍后重试。
+ * <p>
+ * 应用重启或者多节点部署时记录不共享；需要跨节点去重时，可以改成带唯一键的表，插入冲突就说明是重复请求。
+ */
+@Component
+public class TransferIdempotencyStore implements MetricsContributor {
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final long ttlNanos;
+    private final int stripeCapacity;
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public TransferIdempotencyStore(IdempotencyProperties properties) {
+        // 向上取整到 2 的幂
+        int count = properties.getStripes() <= 1 ? 1 : Integer.highestOneBit(properties.getStripes() - 1) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = count - 1;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(properties.getTtlSeconds());
+        this.stripeCapacity = Math.max(1, properties.getMaxEntries() / count);
+    }
+
+    /**
+     * @param key         客户端给的幂等键
+     * @param fingerprint 请求参数的摘要，同一个键对应的参数必须相同
+     * @param transfer    真正执行转账，只有这个键第一次出现（或者上一次异常失败）时才会被调用
+     * @throws RejectedExecutionException 键所在的段已满，而且里面都是还在执行的转账
+     */
+    public CompletableFuture<String> execute(String key, String fingerprint, Supplier<CompletableFuture<String>> transfer) {
+        Stripe stripe = stripes[spread(key.hashCode()) & mask];
+        Entry entry;
+        boolean first = false;
+        synchronized (stripe) {
+            long now = System.nanoTime();
+            stripe.expire(now);
+            entry = stripe.entries.get(key);
+            if (entry == null) {
+                if (!stripe.makeRoom()) {
+                    rejected.increment();
+                    throw new RejectedExecutionException("幂等键去重表已满，进行中的转账太多: " + stripeCapacity + " 个/段");
+                }
+                entry = new Entry(fingerprint, now);
+                stripe.entries.put(key, entry);
+                first = true;
+            }
+        }
+        if (!first) {
+            if (!entry.fingerprint.equals(fingerprint)) {
+                conflicts.increment();
+                throw new IdempotencyKeyConflictException("幂等键 " + key + " 已用于另一笔转账: " + entry.fingerprint);
+            }
+            (entry.result.isDone() ? replayed : joined).increment();
+            return entry.result;
+        }
+
+        executed.increment();
+        Entry owned = entry;
+        CompletableFuture<String> attempt;
+        try {
+            attempt = transfer.get();
+        } catch (RuntimeException e) {
+            forget(stripe, key, owned);
+            owned.result.completeExceptionally(e);
+            throw e;
+        }
+        attempt.whenComplete((value, error) -> {
+            if (error != null) {
+                forget(stripe, key, owned);
+                owned.result.completeExceptionally(error);
+            } else {
+                owned.result.complete(value);
+            }
+        });
+        return owned.result;
+    }
+
+    private void forget(Stripe stripe, String key, Entry entry) {
+        synchronized (stripe) {
+            stripe.entries.remove(key, entry);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void writeMetrics(OpenMetricsExporter.Sink sink) throws IOException {
+        sink.gauge("transfer_idempotency_keys", "Idempotency keys currently remembered.", size());
+        sink.counter("transfer_idempotency_executed", "Keyed transfers executed for the first time.", executed.sum());
+        sink.counter("transfer_idempotency_replayed", "Retries answered from a completed earlier attempt.", replayed.sum());
+        sink.counter("transfer_idempotency_joined", "Concurrent duplicates that waited for the in-flight attempt.", joined.sum());
+        sink.counter("transfer_idempotency_conflicts", "Keys reused with different transfer parameters.", conflicts.sum());
+        sink.counter("transfer_idempotency_evicted", "Keys dropped before expiry because a stripe was full.", evicted.sum());
+        sink.counter("transfer_idempotency_rejected", "New keys refused because a stripe was full of in-flight transfers.", rejected.sum());
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entry {
+        final String fingerprint;
+        final long createdNanos;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Entry(String fingerprint, long createdNanos) {
+            this.fingerprint = fingerprint;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    private final class Stripe {
+        final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+        /**
+         * 从头部清掉已经过期、并且已经有结果的键；头部还没过期就说明后面的也都没过期
+         */
+        void expire(long now) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry head = iterator.next();
+                if (now - head.createdNanos < ttlNanos || !head.result.isDone()) {
+                    return;
+                }
+                iterator.remove();
+            }
+        }
+
+        /**
+         * 为一个新键腾出位置：从头部开始淘汰已经有结果的键，跳过还在执行的
+         *
+         * @return 腾不出位置（剩下的都在执行）时返回 false
+         */
+        boolean makeRoom() {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() >= stripeCapacity && iterator.hasNext()) {
+                if (iterator.next().result.isDone()) {
+                    iterator.remove();
+                    evicted.increment();
+                }
+            }
+            return entries.size() < stripeCapacity;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.fei.listenerdemo.transactional_listener;
+
+/**
+ * 转账不能执行：金额不合法、账户不存在、余额不足
+ */
+public class TransferRejectedException extends RuntimeException {
+
+    public TransferRejectedException(String message) {
+        super(message);
+    }
+}
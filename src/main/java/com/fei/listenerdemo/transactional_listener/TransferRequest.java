@@ -0,0 +1,17 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一笔转账：POST /account/transfers 的请求体元素
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferRequest {
+    private String from;
+    private String to;
+    private double amount;
+}
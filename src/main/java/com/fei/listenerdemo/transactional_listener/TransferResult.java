@@ -0,0 +1,35 @@
+package com.fei.listenerdemo.transactional_listener;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 批量转账中单笔转账的结果
+ */
+@Getter
+@AllArgsConstructor
+public class TransferResult {
+
+    public enum Status {
+        /**
+         * 所在分块的事务已提交
+         */
+        SUCCESS,
+        /**
+         * 参数不合法或账户不存在，没有执行
+         */
+        REJECTED,
+        /**
+         * 所在分块的事务回滚了，同一分块里的其他转账也都没有生效
+         */
+        FAILED
+    }
+
+    // 在请求里的下标，从 0 开始
+    private final int index;
+    private final String from;
+    private final String to;
+    private final double amount;
+    private final Status status;
+    private final String message;
+}
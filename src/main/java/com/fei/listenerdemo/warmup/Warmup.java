@@ -0,0 +1,40 @@
+package com.fei.listenerdemo.warmup;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 把一个无参方法声明为预热任务，容器刷新完成后由 WarmupCoordinator 在预热线程池里并行执行
+ * <p>
+ * 例：
+ * <pre>
+ * &#64;Warmup(name = "balanceCache", dependsOn = "dataSource", budgetMillis = 5000)
+ * public void preload() { ... }
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Warmup {
+
+    /**
+     * 任务名，其他任务用它声明依赖；默认是 “bean名.方法名”
+     */
+    String name() default "";
+
+    /**
+     * 依赖的任务名，这些任务都成功后才开始执行；任何一个失败或超时，本任务跳过
+     */
+    String[] dependsOn() default {};
+
+    /**
+     * 时间预算，超过后中断执行线程、记为超时；小于等于 0 时用 warmup.default-budget-millis
+     */
+    long budgetMillis() default -1;
+
+    /**
+     * 关键任务没有结束（成功、失败、超时、跳过都算结束）之前，/ready 返回 503
+     */
+    boolean critical() default true;
+}
@@ -0,0 +1,268 @@
+package com.fei.listenerdemo.warmup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 预热任务的调度
+ * <p>
+ * MyApplicationReadyListener、MyApplicationRunner、MyCommandLineRunner 都能做预热，但都在主线程里一个接一个执行，
+ * 而且执行期间应用已经在接流量了。这里改成：
+ * - 各个 bean 用 @Warmup 声明预热方法（由 WarmupRegistrar 收集），可以声明依赖和时间预算
+ * - 容器刷新完成（ContextRefreshedEvent）后，在 warmup.threads 个线程的池子里并行执行，依赖的任务都成功后才开始
+ * - 超过时间预算的任务中断执行线程、记为超时；失败或超时任务的下游任务跳过，不会卡住其他任务
+ * - 关键任务（critical）全部结束前 isReady 返回 false，/ready 返回 503，负载均衡不会把流量打到还没预热好的实例上
+ * - 每个任务的开始时间、耗时、线程、失败原因见 getReport（GET /warmup/report）
+ * <p>
+ * 依赖了不存在的任务、或者依赖成环时，在开始预热时直接抛异常，应用启动失败。
+ */
+@Slf4j
+@Component
+public class WarmupCoordinator implements DisposableBean {
+
+    private final WarmupProperties properties;
+    private final Map<String, WarmupTask> tasks = new LinkedHashMap<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    // 开始预热之前为 null
+    private volatile CompletableFuture<Void> criticalDone;
+    private volatile CompletableFuture<Void> allDone;
+    private volatile long startNanos;
+    private ExecutorService pool;
+    private ScheduledExecutorService watchdog;
+
+    public WarmupCoordinator(WarmupProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 注册一个预热任务，只能在开始预热之前调用
+     *
+     * @param budgetMillis 小于等于 0 时用 warmup.default-budget-millis
+     */
+    public synchronized void register(String name, String source, String[] dependsOn, long budgetMillis,
+                                      boolean critical, Runnable action) {
+        if (started.get()) {
+            // 懒加载的 bean 在预热开始后才创建，它的预热方法已经赶不上了
+            log.warn("预热已经开始，忽略后注册的预热任务 {}（{}）", name, source);
+            return;
+        }
+        WarmupTask existing = tasks.get(name);
+        if (existing != null) {
+            throw new IllegalStateException("预热任务重名: " + name + "（" + existing.source + " 和 " + source + "）");
+        }
+        long budget = budgetMillis > 0 ? budgetMillis : properties.getDefaultBudgetMillis();
+        tasks.put(name, new WarmupTask(name, source, Arrays.asList(dependsOn), budget, critical, action));
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        checkDependencies();
+        if (!properties.isEnabled() || tasks.isEmpty()) {
+            for (WarmupTask task : tasks.values()) {
+                task.finish(WarmupTask.State.PENDING, WarmupTask.State.SKIPPED, "warmup.enabled=false");
+                task.done.complete(null);
+            }
+            criticalDone = CompletableFuture.completedFuture(null);
+            allDone = criticalDone;
+            return;
+        }
+
+        pool = Executors.newFixedThreadPool(properties.getThreads(), daemonThreads("warmup-"));
+        watchdog = Executors.newSingleThreadScheduledExecutor(daemonThreads("warmup-watchdog-"));
+        List<CompletableFuture<Void>> critical = new ArrayList<>();
+        List<CompletableFuture<Void>> all = new ArrayList<>();
+        for (WarmupTask task : tasks.values()) {
+            CompletableFuture<?>[] upstream = task.dependsOn.stream()
+                    .map(dependency -> tasks.get(dependency).done)
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(upstream).thenRun(() -> submit(task));
+            all.add(task.done);
+            if (task.critical) {
+                critical.add(task.done);
+            }
+        }
+        // 同一个任务结束时后挂上的回调先执行，allDone 先建，关键任务结束的日志才会排在全部结束之前
+        allDone = CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0]));
+        criticalDone = CompletableFuture.allOf(critical.toArray(new CompletableFuture<?>[0]));
+        criticalDone.thenRun(() -> log.info("关键预热任务全部结束，耗时 {} ms", millis(System.nanoTime() - startNanos)));
+        allDone.thenRun(this::finished);
+        log.info("开始预热：{} 个任务（关键任务 {} 个），{} 个线程", tasks.size(), critical.size(), properties.getThreads());
+    }
+
+    /**
+     * 关键任务是否都已结束（成功、失败、超时、跳过都算）；开始预热之前返回 false
+     */
+    public boolean isReady() {
+        CompletableFuture<Void> done = criticalDone;
+        return done != null && done.isDone();
+    }
+
+    public WarmupReport getReport() {
+        List<WarmupTask> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(tasks.values());
+        }
+        long now = System.nanoTime();
+        long base = startNanos;
+        long end = base;
+        List<WarmupReport.TaskReport> reports = new ArrayList<>();
+        for (WarmupTask task : snapshot) {
+            long started = task.startNanos;
+            long ended = task.done.isDone() ? task.endNanos : now;
+            end = Math.max(end, ended);
+            reports.add(new WarmupReport.TaskReport(task.name, task.source, task.dependsOn, task.critical, task.budgetMillis,
+                    task.state.get(), started == 0 ? -1 : millis(started - base), started == 0 ? -1 : millis(ended - started),
+                    task.thread, task.error));
+        }
+        CompletableFuture<Void> all = allDone;
+        boolean finished = all != null && all.isDone();
+        return new WarmupReport(isReady(), finished, base == 0 ? 0 : millis((finished ? end : now) - base), reports);
+    }
+
+    @Override
+    public void destroy() {
+        if (pool != null) {
+            pool.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+
+    private void submit(WarmupTask task) {
+        for (String dependency : task.dependsOn) {
+            WarmupTask.State upstream = tasks.get(dependency).state.get();
+            if (upstream != WarmupTask.State.SUCCEEDED) {
+                String reason = "依赖的任务 " + dependency + " " + upstream;
+                if (task.finish(WarmupTask.State.PENDING, WarmupTask.State.SKIPPED, reason)) {
+                    log.warn("预热任务 {} 跳过: {}", task.name, reason);
+                    task.done.complete(null);
+                }
+                return;
+            }
+        }
+        FutureTask<Void> execution = new FutureTask<>(() -> run(task), null);
+        task.execution = execution;
+        try {
+            pool.execute(execution);
+        } catch (RejectedExecutionException e) {
+            // 应用在预热过程中被关闭
+            task.finish(WarmupTask.State.PENDING, WarmupTask.State.SKIPPED, "预热线程池已关闭");
+            task.done.complete(null);
+        }
+    }
+
+    private void run(WarmupTask task) {
+        if (!task.state.compareAndSet(WarmupTask.State.PENDING, WarmupTask.State.RUNNING)) {
+            return;
+        }
+        task.thread = Thread.currentThread().getName();
+        task.startNanos = System.nanoTime();
+        ScheduledFuture<?> timeout = watchdog.schedule(() -> timeOut(task), task.budgetMillis, TimeUnit.MILLISECONDS);
+        try {
+            task.action.run();
+            if (task.finish(WarmupTask.State.RUNNING, WarmupTask.State.SUCCEEDED, null)) {
+                log.info("预热任务 {} 完成，耗时 {} ms", task.name, millis(task.endNanos - task.startNanos));
+                task.done.complete(null);
+            }
+        } catch (RuntimeException | Error e) {
+            if (task.finish(WarmupTask.State.RUNNING, WarmupTask.State.FAILED, e.toString())) {
+                log.warn("预热任务 {} 失败，耗时 {} ms", task.name, millis(task.endNanos - task.startNanos), e);
+                task.done.complete(null);
+            }
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    private void timeOut(WarmupTask task) {
+        String reason = "超过时间预算 " + task.budgetMillis + " ms";
+        if (task.finish(WarmupTask.State.RUNNING, WarmupTask.State.TIMED_OUT, reason)) {
+            log.warn("预热任务 {} {}，中断执行线程 {}", task.name, reason, task.thread);
+            task.execution.cancel(true);
+            task.done.complete(null);
+        }
+    }
+
+    private void finished() {
+        Map<WarmupTask.State, Integer> counts = new LinkedHashMap<>();
+        for (WarmupTask task : tasks.values()) {
+            counts.merge(task.state.get(), 1, Integer::sum);
+        }
+        log.info("预热结束：{} 个任务，耗时 {} ms，{}", tasks.size(), millis(System.nanoTime() - startNanos), counts);
+        pool.shutdown();
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * 依赖的任务必须存在，并且不能成环（成环的任务永远等不到开始）
+     */
+    private void checkDependencies() {
+        for (WarmupTask task : tasks.values()) {
+            for (String dependency : task.dependsOn) {
+                if (!tasks.containsKey(dependency)) {
+                    throw new IllegalStateException("预热任务 " + task.name + " 依赖的任务 " + dependency + " 不存在");
+                }
+            }
+        }
+        Set<String> checked = new HashSet<>();
+        for (WarmupTask task : tasks.values()) {
+            checkNoCycle(task, new ArrayList<>(), checked);
+        }
+    }
+
+    private void checkNoCycle(WarmupTask task, List<String> path, Set<String> checked) {
+        if (checked.contains(task.name)) {
+            return;
+        }
+        int index = path.indexOf(task.name);
+        if (index >= 0) {
+            List<String> cycle = new ArrayList<>(path.subList(index, path.size()));
+            cycle.add(task.name);
+            throw new IllegalStateException("预热任务的依赖成环: " + String.join(" -> ", cycle));
+        }
+        path.add(task.name);
+        for (String dependency : task.dependsOn) {
+            checkNoCycle(tasks.get(dependency), path, checked);
+        }
+        path.remove(path.size() - 1);
+        checked.add(task.name);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.fei.listenerdemo.warmup;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * WarmupCoordinator 的配置，对应 application.yml 中以 warmup 开头的属性
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "warmup")
+public class WarmupProperties {
+
+    /**
+     * 关闭后不执行任何预热任务，/ready 只看 Spring Boot 自身的就绪状态
+     */
+    private boolean enabled = true;
+
+    /**
+     * 预热线程数；预热大多是查库、调下游，线程数太多反而会在启动时压垮连接池
+     */
+    private int threads = 4;
+
+    /**
+     * @Warmup 没有指定 budgetMillis 时的时间预算
+     */
+    private long defaultBudgetMillis = 30000;
+}
@@ -0,0 +1,44 @@
+package com.fei.listenerdemo.warmup;
+
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+
+/**
+ * 在 bean 创建完成（代理也已经生成）时，把标注了 @Warmup 的方法注册到 WarmupCoordinator，
+ * 执行时调用的是代理上的方法，@Transactional 等注解照样生效
+ */
+@Component
+public class WarmupRegistrar implements BeanPostProcessor {
+
+    private final WarmupCoordinator coordinator;
+
+    public WarmupRegistrar(WarmupCoordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Class<?> targetClass = AopUtils.getTargetClass(bean);
+        ReflectionUtils.doWithMethods(targetClass, method -> register(bean, beanName, method),
+                method -> AnnotatedElementUtils.hasAnnotation(method, Warmup.class));
+        return bean;
+    }
+
+    private void register(Object bean, String beanName, Method method) {
+        String source = beanName + "." + method.getName();
+        if (method.getParameterCount() != 0) {
+            throw new IllegalStateException("@Warmup 方法不能有参数: " + source);
+        }
+        Warmup warmup = AnnotatedElementUtils.findMergedAnnotation(method, Warmup.class);
+        Method invocable = AopUtils.selectInvocableMethod(method, bean.getClass());
+        ReflectionUtils.makeAccessible(invocable);
+        String name = warmup.name().isEmpty() ? source : warmup.name();
+        coordinator.register(name, source, warmup.dependsOn(), warmup.budgetMillis(), warmup.critical(),
+                () -> ReflectionUtils.invokeMethod(invocable, bean));
+    }
+}
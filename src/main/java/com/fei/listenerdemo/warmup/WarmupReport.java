@@ -0,0 +1,39 @@
+package com.fei.listenerdemo.warmup;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 预热执行情况，见 WarmupCoordinator
+ */
+@Getter
+@AllArgsConstructor
+public class WarmupReport {
+    // 关键任务是否都已结束
+    private final boolean ready;
+    // 所有任务是否都已结束
+    private final boolean finished;
+    // 从开始预热到现在（全部结束后是到最后一个任务结束）的耗时
+    private final double elapsedMillis;
+    private final List<TaskReport> tasks;
+
+    @Getter
+    @AllArgsConstructor
+    public static class TaskReport {
+        private final String name;
+        // 声明这个任务的 bean名.方法名
+        private final String source;
+        private final List<String> dependsOn;
+        private final boolean critical;
+        private final long budgetMillis;
+        private final WarmupTask.State state;
+        // 相对于开始预热的时间，还没开始时为 -1
+        private final double startedAtMillis;
+        // 执行耗时，还没结束时为到现在的耗时，没开始时为 -1
+        private final double durationMillis;
+        private final String thread;
+        private final String error;
+    }
+}
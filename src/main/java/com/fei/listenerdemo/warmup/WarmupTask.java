@@ -0,0 +1,54 @@
+package com.fei.listenerdemo.warmup;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 一个预热任务的定义和执行状态
+ */
+public final class WarmupTask {
+
+    public enum State {
+        PENDING, RUNNING, SUCCEEDED, FAILED, TIMED_OUT, SKIPPED
+    }
+
+    final String name;
+    final String source;
+    final List<String> dependsOn;
+    final long budgetMillis;
+    final boolean critical;
+    final Runnable action;
+
+    final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+    // 任务结束（任何结束状态）时完成，依赖它的任务和就绪判断都等这个
+    final CompletableFuture<Void> done = new CompletableFuture<>();
+    volatile long startNanos;
+    volatile long endNanos;
+    volatile String thread;
+    volatile String error;
+    volatile Future<?> execution;
+
+    WarmupTask(String name, String source, List<String> dependsOn, long budgetMillis, boolean critical, Runnable action) {
+        this.name = name;
+        this.source = source;
+        this.dependsOn = dependsOn;
+        this.budgetMillis = budgetMillis;
+        this.critical = critical;
+        this.action = action;
+    }
+
+    /**
+     * 只有第一次从 from 转到结束状态的调用生效：超时之后任务自己才跑完，不会把 TIMED_OUT 改成 SUCCEEDED。
+     * 返回 true 后由调用方记完日志再完成 done，下游任务的日志不会排到这个任务前面
+     */
+    boolean finish(State from, State to, String error) {
+        if (!state.compareAndSet(from, to)) {
+            return false;
+        }
+        this.error = error;
+        this.endNanos = System.nanoTime();
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+package com.fei.scheduling;
+
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.support.CronTrigger;
+
+import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * 交给 ScheduledTaskRegistrar 的 TaskScheduler：周期任务先由 ScheduledJobMonitor 登记成 ScheduledJobRunner，
+ * 再把 runner 交给真正的 taskScheduler 调度；只执行一次的任务原样转发
+ */
+class InstrumentedTaskScheduler implements TaskScheduler {
+
+    private final TaskScheduler delegate;
+    private final ScheduledJobMonitor monitor;
+
+    InstrumentedTaskScheduler(TaskScheduler delegate, ScheduledJobMonitor monitor) {
+        this.delegate = delegate;
+        this.monitor = monitor;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+        String schedule = trigger instanceof CronTrigger ? "cron=" + ((CronTrigger) trigger).getExpression() : trigger.toString();
+        ScheduledJobRunner runner = monitor.register(task, schedule, ScheduledJobRunner.Mode.TRIGGER);
+        return delegate.schedule(runner, runner.trigger(trigger));
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+        return delegate.schedule(task, startTime);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+        ScheduledJobRunner runner = monitor.register(task, "fixedRate=" + period + "ms", ScheduledJobRunner.Mode.FIXED_RATE);
+        runner.fixedRate(startTime.getTime(), period);
+        return delegate.scheduleAtFixedRate(runner, startTime, period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+        ScheduledJobRunner runner = monitor.register(task, "fixedRate=" + period + "ms", ScheduledJobRunner.Mode.FIXED_RATE);
+        runner.fixedRate(System.currentTimeMillis(), period);
+        return delegate.scheduleAtFixedRate(runner, period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+        ScheduledJobRunner runner = monitor.register(task, "fixedDelay=" + delay + "ms", ScheduledJobRunner.Mode.FIXED_DELAY);
+        runner.fixedDelay(startTime.getTime(), delay);
+        return delegate.scheduleWithFixedDelay(runner, startTime, delay);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+        ScheduledJobRunner runner = monitor.register(task, "fixedDelay=" + delay + "ms", ScheduledJobRunner.Mode.FIXED_DELAY);
+        runner.fixedDelay(System.currentTimeMillis(), delay);
+        return delegate.scheduleWithFixedDelay(runner, delay);
+    }
+}
@@ -0,0 +1,41 @@
+package com.fei.scheduling;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 正在执行的 @ScheduledJob(clusterLease = true) 任务持有的租约，任务里通过 current() 拿到
+ * <p>
+ * 持有者卡顿（长时间 GC、网络分区）超过有效期时，别的节点可能已经接手，旧的执行还没意识到。
+ * 任务写库时带上 fencing token，旧持有者的写入就会落空：
+ * <pre>
+ * JobLease lease = JobLease.current();
+ * jdbcTemplate.update("UPDATE ... WHERE ... AND " + JobLeaseManager.FENCE_CONDITION, ..., lease.getJobName(), lease.getFencingToken());
+ * </pre>
+ */
+@Getter
+@AllArgsConstructor
+public final class JobLease {
+
+    private static final ThreadLocal<JobLease> CURRENT = new ThreadLocal<>();
+
+    // 租约的键，见 ScheduledJob.name
+    private final String jobName;
+    // 每换一次持有者加一，新持有者的 token 一定比旧的大
+    private final long fencingToken;
+
+    /**
+     * 当前线程正在执行的任务持有的租约；不在集群租约任务里时返回 null
+     */
+    public static JobLease current() {
+        return CURRENT.get();
+    }
+
+    static void set(JobLease lease) {
+        CURRENT.set(lease);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,265 @@
+package com.fei.scheduling;
+
+import com.fei.aop.count_method_call_count.LatencyHistogram;
+import com.fei.aop.count_method_call_count.MetricsContributor;
+import com.fei.aop.count_method_call_count.OpenMetricsExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 定时任务的集群租约：部署 N 个节点时，@ScheduledJob(clusterLease = true) 的任务每次触发只在一个节点上执行
+ * <p>
+ * scheduled_job_lease 表每个任务一行，owner 持有租约到 expires_at（数据库时间，不受各节点时钟偏差影响），
+ * 每换一次持有者 fencing_token 加一。续约线程每 renew-interval-millis 执行一轮，不管有多少个任务，一轮只有两条语句：
+ * 1. 一条 UPDATE 同时续约自己持有的租约、认领已经过期的租约（认领的 token 加一）
+ * 2. 一条 SELECT 查出自己现在持有哪些租约和 token
+ * 每轮开始时记下本机时间，租约在本机看来有效到 “这一轮开始 + ttl - safety-margin”，这个时间一定早于数据库里的 expires_at，
+ * 所以旧持有者停止执行一定在别人能接手之前。任务触发时只查本地的持有表，不访问数据库；续约失败时到期自动停止执行。
+ * <p>
+ * 节点宕机后它的租约在 ttl 内过期，其他节点在下一轮认领，接手时间不超过 ttl-millis + renew-interval-millis；
+ * 正常停机时立刻释放租约，其他节点下一轮就能接手。持有者卡顿超过有效期的极端情况下新旧两个执行可能重叠，
+ * 任务写库时用 fencing token 防护，见 JobLease。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "scheduling.lease.enabled", havingValue = "true", matchIfMissing = true)
+public class JobLeaseManager implements MetricsContributor, DisposableBean {
+
+    /**
+     * 任务写库时附加的条件，参数依次是租约的键（JobLease.getJobName()）和 fencing token；租约已经换了持有者时条件不成立，写入落空
+     */
+    public static final String FENCE_CONDITION =
+            "EXISTS (SELECT 1 FROM scheduled_job_lease WHERE job_name = ? AND fencing_token = ?)";
+
+    private static final String INSERT_SQL = "INSERT INTO scheduled_job_lease (job_name, owner, fencing_token, expires_at)"
+            + " VALUES (?, '', 0, CURRENT_TIMESTAMP(3))";
+    // fencing_token 的 CASE 写在 owner 赋值之前：MySQL 的 SET 从左到右求值，这样读到的也是旧的 owner
+    private static final String RENEW_AND_CLAIM_SQL = "UPDATE scheduled_job_lease"
+            + " SET fencing_token = CASE WHEN owner = ? THEN fencing_token ELSE fencing_token + 1 END,"
+            + " owner = ?, expires_at = TIMESTAMPADD(MICROSECOND, ?, CURRENT_TIMESTAMP(3))"
+            + " WHERE job_name IN (%s) AND (owner = ? OR expires_at <= CURRENT_TIMESTAMP(3))";
+    private static final String HELD_SQL = "SELECT job_name, fencing_token FROM scheduled_job_lease"
+            + " WHERE owner = ? AND expires_at > CURRENT_TIMESTAMP(3)";
+    private static final String RELEASE_SQL = "UPDATE scheduled_job_lease SET expires_at = CURRENT_TIMESTAMP(3) WHERE owner = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLeaseProperties properties;
+    private final String nodeId;
+    // 本节点上需要的租约的键，见 ScheduledJob.name
+    private final Set<String> jobs = ConcurrentHashMap.newKeySet();
+    // 已经确认在租约表里有行的租约的键，只有续约线程读写
+    private final Set<String> rows = new HashSet<>();
+    // 租约的键 -> fencing token，每轮整体替换
+    private volatile Map<String, Long> held = Collections.emptyMap();
+    // 本地认为租约有效的截止时间（System.nanoTime 时间轴），初始为已过期
+    private volatile long validUntilNanos = System.nanoTime();
+    private volatile boolean stopped;
+    // 拿到了 token、还没执行完的集群租约任务数，停机时等它们结束再释放租约
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LatencyHistogram roundLatency = new LatencyHistogram();
+    private final LongAdder rounds = new LongAdder();
+    private final LongAdder roundErrors = new LongAdder();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+    private ScheduledExecutorService renewer;
+
+    public JobLeaseManager(JdbcTemplate jdbcTemplate, JobLeaseProperties properties) {
+        if (properties.getTtlMillis() <= properties.getRenewIntervalMillis() + properties.getSafetyMarginMillis()) {
+            throw new IllegalStateException("scheduling.lease.ttl-millis 必须大于 renew-interval-millis + safety-margin-millis，"
+                    + "否则续约前租约就在本地失效了");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.nodeId = properties.getNodeId().isEmpty()
+                ? ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8)
+                : properties.getNodeId();
+    }
+
+    /**
+     * 由 ScheduledJobMonitor 在登记任务时调用，下一轮续约时开始争抢这个租约
+     */
+    void register(String job) {
+        jobs.add(job);
+    }
+
+    /**
+     * 本节点持有这个任务的租约、并且在本地看来还没过期时返回 fencing token，否则返回 null；
+     * 返回了 token 的调用方在执行结束（或者决定不执行）时必须调用 exit
+     */
+    synchronized Long enter(String job) {
+        Long token = held.get(job);
+        if (stopped || token == null || validUntilNanos - System.nanoTime() <= 0) {
+            return null;
+        }
+        inFlight.incrementAndGet();
+        return token;
+    }
+
+    void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 本节点当前持有的租约：租约的键 -> fencing token；本地已经过期时为空
+     */
+    public Map<String, Long> getHeldLeases() {
+        return validUntilNanos - System.nanoTime() > 0 ? held : Collections.emptyMap();
+    }
+
+    /**
+     * 等 schema.sql 执行完（数据源初始化在容器刷新之前）再开始续约
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        if (renewer != null) {
+            return;
+        }
+        renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        renewer.scheduleWithFixedDelay(this::renew, 0, properties.getRenewIntervalMillis(), TimeUnit.MILLISECONDS);
+        log.info("定时任务集群租约：节点 {}，有效期 {} ms，每 {} ms 续约一次", nodeId,
+                properties.getTtlMillis(), properties.getRenewIntervalMillis());
+    }
+
+    private void renew() {
+        if (jobs.isEmpty() || stopped) {
+            return;
+        }
+        long roundStart = System.nanoTime();
+        try {
+            List<String> names = new ArrayList<>(jobs);
+            insertMissingRows(names);
+            List<Object> args = new ArrayList<>(names.size() + 4);
+            args.add(nodeId);
+            args.add(nodeId);
+            args.add(TimeUnit.MILLISECONDS.toMicros(properties.getTtlMillis()));
+            args.addAll(names);
+            args.add(nodeId);
+            jdbcTemplate.update(String.format(RENEW_AND_CLAIM_SQL, String.join(",", Collections.nCopies(names.size(), "?"))),
+                    args.toArray());
+            Map<String, Long> now = new HashMap<>();
+            jdbcTemplate.query(HELD_SQL, rs -> {
+                now.put(rs.getString(1), rs.getLong(2));
+            }, nodeId);
+            if (stopped) {
+                return;
+            }
+            logChanges(held, now);
+            held = now;
+            validUntilNanos = roundStart + TimeUnit.MILLISECONDS.toNanos(properties.getTtlMillis() - properties.getSafetyMarginMillis());
+            rounds.increment();
+        } catch (RuntimeException e) {
+            // held 不动，本地有效期到了之后任务自动停止执行
+            roundErrors.increment();
+            log.warn("定时任务租约续约失败，持有的租约 {} ms 后在本地失效", Math.max(0,
+                    TimeUnit.NANOSECONDS.toMillis(validUntilNanos - System.nanoTime())), e);
+        } finally {
+            roundLatency.record(System.nanoTime() - roundStart);
+        }
+    }
+
+    /**
+     * 新任务第一次出现时补上租约表里的行，多个节点同时插入时只有一个成功
+     */
+    private void insertMissingRows(List<String> names) {
+        for (String name : names) {
+            if (rows.contains(name)) {
+                continue;
+            }
+            try {
+                jdbcTemplate.update(INSERT_SQL, name);
+            } catch (DuplicateKeyException e) {
+                // 别的节点已经插入
+            }
+            rows.add(name);
+        }
+    }
+
+    private void logChanges(Map<String, Long> before, Map<String, Long> after) {
+        for (Map.Entry<String, Long> entry : after.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                acquired.increment();
+                log.info("节点 {} 取得定时任务 {} 的租约，fencing token {}", nodeId, entry.getKey(), entry.getValue());
+            }
+        }
+        for (String job : before.keySet()) {
+            if (!after.containsKey(job)) {
+                lost.increment();
+                log.info("节点 {} 失去定时任务 {} 的租约", nodeId, job);
+            }
+        }
+    }
+
+    @Override
+    public void writeMetrics(OpenMetricsExporter.Sink sink) throws IOException {
+        sink.gauge("scheduled_job_leases_held", "Job leases this node currently holds.", getHeldLeases().size());
+        sink.counter("scheduled_job_lease_rounds", "Successful renew-and-claim rounds.", rounds.sum());
+        sink.counter("scheduled_job_lease_round_errors", "Renew-and-claim rounds that failed.", roundErrors.sum());
+        sink.counter("scheduled_job_lease_acquired", "Leases this node took over.", acquired.sum());
+        sink.counter("scheduled_job_lease_lost", "Leases this node lost to another node or to expiry.", lost.sum());
+        sink.durationSummary("scheduled_job_lease_round_seconds", "Duration of one renew-and-claim round.", roundLatency);
+    }
+
+    /**
+     * 停止续约；release-on-shutdown 时等本节点正在执行的集群租约任务结束（最多等到租约在本地失效），
+     * 再把持有的租约改成立刻过期，其他节点下一轮就能接手，不会和还没跑完的执行重叠。
+     * held 可能是旧的（最后一轮认领了租约、还没更新 held 就因为停机返回了），所以总是按 owner 释放，不看 held
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        synchronized (this) {
+            // 之后 enter 都返回 null，不会再有新的执行
+            stopped = true;
+            if (renewer != null) {
+                renewer.shutdownNow();
+            }
+        }
+        if (renewer != null) {
+            renewer.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        if (!properties.isReleaseOnShutdown() || jobs.isEmpty()) {
+            return;
+        }
+        while (inFlight.get() > 0 && validUntilNanos - System.nanoTime() > 0) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        held = Collections.emptyMap();
+        try {
+            int released = jdbcTemplate.update(RELEASE_SQL, nodeId);
+            log.info("节点 {} 释放了 {} 个定时任务租约", nodeId, released);
+        } catch (RuntimeException e) {
+            log.warn("释放定时任务租约失败，其他节点要等租约过期后才能接手", e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.fei.scheduling;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 定时任务集群租约的配置，对应 application.yml 中以 scheduling.lease 开头的属性，见 JobLeaseManager
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "scheduling.lease")
+public class JobLeaseProperties {
+
+    /**
+     * 是否开启集群租约；关闭后 @ScheduledJob(clusterLease = true) 的任务和普通任务一样每个节点都执行
+     */
+    private boolean enabled = true;
+
+    /**
+     * 节点标识，写进租约表的 owner 列；为空时用 “pid@主机名-随机串”，同一个 JVM 里的多个容器也不会重复
+     */
+    private String nodeId = "";
+
+    /**
+     * 租约有效期：持有者停止续约（宕机、和数据库断开）后，最多过这么久别的节点就可以接手
+     */
+    private long ttlMillis = 20000;
+
+    /**
+     * 多久续约一次，同时认领已经过期的租约；节点宕机后任务最迟在 ttl-millis + renew-interval-millis 内换到别的节点
+     */
+    private long renewIntervalMillis = 5000;
+
+    /**
+     * 持有者按自己的时钟提前这么久认为租约失效、停止执行，抵消本机和数据库之间的时钟速率误差
+     */
+    private long safetyMarginMillis = 1000;
+
+    /**
+     * 停机时是否立刻释放持有的租约，让别的节点在下一轮续约时就接手；关闭后要等租约过期（和宕机一样）
+     */
+    private boolean releaseOnShutdown = true;
+}
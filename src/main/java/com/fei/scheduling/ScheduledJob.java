@@ -0,0 +1,52 @@
+package com.fei.scheduling;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 和 @Scheduled 一起用，声明定时任务的执行方式；不加这个注解的 @Scheduled 方法按默认值执行，照样统计
+ * <p>
+ * 例：慢任务放到自己的线程池里，不占共享的 taskScheduler 线程，上一次还没跑完时这一次跳过
+ * <pre>
+ * &#64;Scheduled(fixedRate = 5000)
+ * &#64;ScheduledJob(poolSize = 1)
+ * public void performTask() { ... }
+ * </pre>
+ * 集群里只在一个节点上执行：
+ * <pre>
+ * &#64;Scheduled(cron = "0 0 0 * * ?")
+ * &#64;ScheduledJob(clusterLease = true)
+ * public void performTaskUsingCron() { ... }
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ScheduledJob {
+
+    /**
+     * 统计里的任务名，默认是 “类名.方法名”；clusterLease 时同时是租约的键（默认是 “全限定类名.方法名”），
+     * 租约表被多个应用共用时要保证在这些应用里唯一，同名的任务共用一个租约
+     */
+    String name() default "";
+
+    /**
+     * 大于 0 时任务在自己的线程池（这么多个线程）里执行，调度线程只负责派发；
+     * 0 表示直接在共享的 taskScheduler 线程上执行。
+     * 不能和 fixedDelay 一起用（派发完就开始算间隔，不再是执行结束后的间隔），启动时报错
+     */
+    int poolSize() default 0;
+
+    /**
+     * 同时在执行的次数上限，到了上限时这一次直接跳过，记入 skipped；默认 1，即上一次还在执行就跳过
+     */
+    int maxConcurrent() default 1;
+
+    /**
+     * 部署多个节点时，每次触发只在持有这个任务租约的节点上执行，其他节点跳过（记入 standby），见 JobLeaseManager；
+     * 方法改名、类换包都会换一个租约，新旧版本混跑的滚动发布期间各自执行，需要不变的键时显式声明 name；
+     * 只在本节点内存里做事的任务（比如轮转本地统计窗口）不要开
+     */
+    boolean clusterLease() default false;
+}
@@ -0,0 +1,187 @@
+package com.fei.scheduling;
+
+import com.fei.aop.count_method_call_count.LatencySnapshot;
+import com.fei.aop.count_method_call_count.MetricsContributor;
+import com.fei.aop.count_method_call_count.OpenMetricsExporter;
+import com.fei.config.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.ScheduledMethodRunnable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时任务执行层
+ * <p>
+ * 原来所有 @Scheduled 任务直接跑在 SchedulerConfig 的 10 个线程的 taskScheduler 上：慢任务一直占着调度线程，
+ * 任务多了之后别的任务开始得越来越晚，而且看不出是谁慢、晚了多少。现在 SchedulerConfig 把 instrument 包装过的
+ * TaskScheduler 交给 ScheduledTaskRegistrar，每个周期任务登记成一个 ScheduledJobRunner：
+ * - 记录每次执行的耗时、相对计划时间的启动延迟，以及失败、超时（结束时已过下一次计划时间）、跳过的次数
+ * - @ScheduledJob(clusterLease = true) 的任务只在持有集群租约的节点上执行，见 JobLeaseManager
+ * - 按 @ScheduledJob 的声明限制同时执行的次数（默认 1，即上一次还在执行就跳过），或者放到独立线程池里执行，
+ *   调度线程只负责派发，一个慢任务占不满共享的调度线程
+ * <p>
+ * 统计通过 GET /scheduling/jobs 和 /metrics 输出。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "scheduling.jobs.enabled", havingValue = "true", matchIfMissing = true)
+public class ScheduledJobMonitor implements MetricsContributor, DisposableBean {
+
+    private final ScheduledJobProperties properties;
+    private final boolean virtualThreads;
+    // scheduling.lease.enabled=false 时为 null，集群租约任务也在每个节点上执行
+    private final JobLeaseManager leases;
+    // 任务名 -> runner，按任务名排序输出
+    private final Map<String, ScheduledJobRunner> jobs = new ConcurrentSkipListMap<>();
+
+    public ScheduledJobMonitor(ScheduledJobProperties properties, ObjectProvider<JobLeaseManager> leases,
+                               @Value("${" + VirtualThreads.ENABLED_PROPERTY + ":false}") boolean virtualThreads) {
+        this.properties = properties;
+        this.leases = leases.getIfAvailable();
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * 包装 taskScheduler，交给 ScheduledTaskRegistrar 使用
+     */
+    public TaskScheduler instrument(TaskScheduler scheduler) {
+        return new InstrumentedTaskScheduler(scheduler, this);
+    }
+
+    public List<ScheduledJobStats> getStats() {
+        List<ScheduledJobStats> stats = new ArrayList<>();
+        for (ScheduledJobRunner job : jobs.values()) {
+            long lastDuration = job.lastDurationNanos;
+            stats.add(new ScheduledJobStats(job.name, job.source, job.leaseKey, job.schedule,
+                    job.pool == null ? "taskScheduler" : "pool(" + job.poolSize + ")", job.maxConcurrent,
+                    job.runs.sum(), job.failures.sum(), job.skipped.sum(), job.overruns.sum(),
+                    job.leases == null ? -1 : job.standby.sum(), job.running.get(),
+                    job.lastStartedAt, lastDuration < 0 ? -1 : lastDuration / 1_000_000.0, job.lastError,
+                    LatencySnapshot.of(job.duration), LatencySnapshot.of(job.startLag)));
+        }
+        return stats;
+    }
+
+    @Override
+    public void writeMetrics(OpenMetricsExporter.Sink sink) throws IOException {
+        sink.durationSummaryHeader("scheduled_job_duration_seconds", "Run time of each scheduled job execution.");
+        for (ScheduledJobRunner job : jobs.values()) {
+            sink.durationSummary("scheduled_job_duration_seconds", "job", job.name, job.duration);
+        }
+        sink.durationSummaryHeader("scheduled_job_start_lag_seconds", "How late each execution started against its schedule.");
+        for (ScheduledJobRunner job : jobs.values()) {
+            sink.durationSummary("scheduled_job_start_lag_seconds", "job", job.name, job.startLag);
+        }
+        sink.counterHeader("scheduled_job_failures", "Executions that threw.");
+        for (ScheduledJobRunner job : jobs.values()) {
+            sink.counter("scheduled_job_failures", "job", job.name, job.failures.sum());
+        }
+        sink.counterHeader("scheduled_job_skipped", "Triggers dropped because the job was at its concurrency limit.");
+        for (ScheduledJobRunner job : jobs.values()) {
+            sink.counter("scheduled_job_skipped", "job", job.name, job.skipped.sum());
+        }
+        sink.counterHeader("scheduled_job_overruns", "Executions that finished after the next scheduled start.");
+        for (ScheduledJobRunner job : jobs.values()) {
+            sink.counter("scheduled_job_overruns", "job", job.name, job.overruns.sum());
+        }
+        sink.counterHeader("scheduled_job_standby", "Triggers left to the node holding the cluster lease.");
+        for (ScheduledJobRunner job : jobs.values()) {
+            if (job.leases != null) {
+                sink.counter("scheduled_job_standby", "job", job.name, job.standby.sum());
+            }
+        }
+    }
+
+    /**
+     * 停机时等独立线程池里正在执行的任务结束；taskScheduler 这时如果还在派发，会被关闭的线程池拒绝，记为跳过
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        List<ExecutorService> pools = new ArrayList<>();
+        for (ScheduledJobRunner job : jobs.values()) {
+            if (job.pool != null) {
+                job.pool.shutdown();
+                pools.add(job.pool);
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(properties.getShutdownAwaitSeconds());
+        for (ExecutorService pool : pools) {
+            if (!pool.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.warn("定时任务线程池 {} 秒内没有停下来，中断正在执行的任务", properties.getShutdownAwaitSeconds());
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    ScheduledJobRunner register(Runnable task, String schedule, ScheduledJobRunner.Mode mode) {
+        String source = task.toString();
+        String qualifiedSource = null;
+        ScheduledJob declared = null;
+        if (task instanceof ScheduledMethodRunnable) {
+            ScheduledMethodRunnable methodRunnable = (ScheduledMethodRunnable) task;
+            Class<?> targetClass = AopUtils.getTargetClass(methodRunnable.getTarget());
+            Method method = AopUtils.getMostSpecificMethod(methodRunnable.getMethod(), targetClass);
+            source = ClassUtils.getUserClass(targetClass).getSimpleName() + "." + method.getName();
+            qualifiedSource = ClassUtils.getUserClass(targetClass).getName() + "." + method.getName();
+            declared = AnnotatedElementUtils.findMergedAnnotation(method, ScheduledJob.class);
+        }
+        String name = declared == null || declared.name().isEmpty() ? source : declared.name();
+        int poolSize = declared == null ? 0 : declared.poolSize();
+        int maxConcurrent = declared == null ? 1 : declared.maxConcurrent();
+        JobLeaseManager jobLeases = declared != null && declared.clusterLease() ? leases : null;
+        if (maxConcurrent < 1 || poolSize < 0) {
+            throw new IllegalStateException("@ScheduledJob 的 maxConcurrent 至少为 1，poolSize 不能为负数: " + source);
+        }
+        if (mode == ScheduledJobRunner.Mode.FIXED_DELAY && poolSize > 0) {
+            // 调度线程派发完就开始算下一次的间隔，fixedDelay 就不再是 “上一次执行完之后再等这么久” 了
+            throw new IllegalStateException("@Scheduled(fixedDelay) 不能和 @ScheduledJob(poolSize > 0) 一起用，"
+                    + "间隔要从执行结束开始算时去掉 poolSize，要放进独立线程池时改用 fixedRate: " + source);
+        }
+        // 租约表是多个应用、多个版本共用的，键不能用简单类名和登记顺序决定的序号：
+        // 显式声明了 name 就用 name，否则用全限定类名.方法名；同一个方法上的多个 @Scheduled 共用一个租约
+        String leaseKey = jobLeases == null ? null
+                : declared.name().isEmpty() ? qualifiedSource : declared.name();
+
+        synchronized (jobs) {
+            // 同一个方法上有多个 @Scheduled 时，后面的加序号
+            String unique = name;
+            for (int i = 2; jobs.containsKey(unique); i++) {
+                unique = name + "#" + i;
+            }
+            ExecutorService pool = poolSize > 0 ? newPool(unique, poolSize) : null;
+            ScheduledJobRunner runner = new ScheduledJobRunner(unique, source, schedule, task, maxConcurrent, pool, poolSize,
+                    jobLeases, leaseKey);
+            jobs.put(unique, runner);
+            if (jobLeases != null) {
+                jobLeases.register(leaseKey);
+            }
+            log.info("定时任务 {}（{}）：{}，{}，最多同时执行 {} 次{}", unique, source, schedule,
+                    pool == null ? "在 taskScheduler 上执行" : "独立线程池 " + poolSize + " 个线程", maxConcurrent,
+                    jobLeases == null ? "" : "，集群内只在持有租约 " + leaseKey + " 的节点上执行");
+            return runner;
+        }
+    }
+
+    private ExecutorService newPool(String name, int size) {
+        return new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                VirtualThreads.factory(virtualThreads, "job-" + name + "-"));
+    }
+}
@@ -0,0 +1,24 @@
+package com.fei.scheduling;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 定时任务执行层的配置，对应 application.yml 中以 scheduling.jobs 开头的属性
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "scheduling.jobs")
+public class ScheduledJobProperties {
+
+    /**
+     * 是否给 @Scheduled 任务套上统计和并发控制；关闭后和原来一样直接跑在 taskScheduler 上
+     */
+    private boolean enabled = true;
+
+    /**
+     * 停机时等待独立线程池里正在执行的任务结束的时间，超时后中断
+     */
+    private int shutdownAwaitSeconds = 30;
+}
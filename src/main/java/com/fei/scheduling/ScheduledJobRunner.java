@@ -0,0 +1,211 @@
+package com.fei.scheduling;
+
+import com.fei.aop.count_method_call_count.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个定时任务登记后的执行包装：交给 taskScheduler 调度的是它，它再去执行真正的任务
+ * <p>
+ * 每次触发时：
+ * - 先算出这一次 “本该” 开始的时间（fixedRate 是首次时间 + n 个周期，fixedDelay 是上一次结束 + 间隔，cron 等触发器是触发器算出来的时间），
+ *   以及再下一次本该开始的时间，作为这一次的截止时间
+ * - 集群租约任务在本节点没有持有租约时跳过（记入 standby），持有时把 fencing token 通过 JobLease 交给任务
+ * - 同时在执行的次数到了 maxConcurrent 就跳过这一次；否则在调度线程上直接执行，或者派发到独立线程池
+ * - 开始执行时记录启动延迟（实际开始 - 本该开始），结束时记录耗时，结束晚于截止时间记一次超时（overrun）
+ * <p>
+ * 同一个任务的触发在调度线程上是串行的（ScheduledThreadPoolExecutor 不会并发执行同一个周期任务），
+ * 所以计划时间只在 run 里读写；真正的执行可能在独立线程池里并发，只碰原子计数和直方图。
+ */
+@Slf4j
+final class ScheduledJobRunner implements Runnable {
+
+    enum Mode {
+        FIXED_RATE, FIXED_DELAY, TRIGGER
+    }
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    final String name;
+    final String source;
+    final String schedule;
+    final int maxConcurrent;
+    // null 表示在调度线程上直接执行
+    final ExecutorService pool;
+    final int poolSize;
+    // 不为 null 时是集群租约任务，本节点持有 leaseKey 的租约才执行
+    final JobLeaseManager leases;
+    final String leaseKey;
+
+    final LatencyHistogram duration = new LatencyHistogram();
+    final LatencyHistogram startLag = new LatencyHistogram();
+    final LongAdder runs = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final LongAdder skipped = new LongAdder();
+    final LongAdder overruns = new LongAdder();
+    final LongAdder standby = new LongAdder();
+    final AtomicInteger running = new AtomicInteger();
+    volatile long lastStartedAt = -1;
+    volatile long lastDurationNanos = -1;
+    volatile String lastError;
+
+    private final Runnable task;
+    private final Semaphore permits;
+    private Mode mode;
+    private long intervalNanos;
+    private Trigger trigger;
+    // 下一次触发本该开始的时间（System.nanoTime 时间轴），TRIGGER 模式下另外记一份墙上时间，用来向触发器要再下一次的时间
+    private volatile long expectedNanos;
+    private volatile long expectedMillis;
+
+    ScheduledJobRunner(String name, String source, String schedule, Runnable task, int maxConcurrent,
+                       ExecutorService pool, int poolSize, JobLeaseManager leases, String leaseKey) {
+        this.name = name;
+        this.source = source;
+        this.schedule = schedule;
+        this.task = task;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+        this.pool = pool;
+        this.poolSize = poolSize;
+        this.leases = leases;
+        this.leaseKey = leaseKey;
+    }
+
+    void fixedRate(long firstStartMillis, long periodMillis) {
+        this.mode = Mode.FIXED_RATE;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        this.expectedNanos = nanosAt(firstStartMillis);
+    }
+
+    void fixedDelay(long firstStartMillis, long delayMillis) {
+        this.mode = Mode.FIXED_DELAY;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.expectedNanos = nanosAt(firstStartMillis);
+    }
+
+    /**
+     * 返回交给 taskScheduler 的触发器：原样使用 trigger 算出的时间，顺便记下来作为下一次本该开始的时间
+     */
+    Trigger trigger(Trigger trigger) {
+        this.mode = Mode.TRIGGER;
+        this.trigger = trigger;
+        return triggerContext -> {
+            Date next = trigger.nextExecutionTime(triggerContext);
+            if (next != null) {
+                expectedMillis = next.getTime();
+                expectedNanos = nanosAt(next.getTime());
+            }
+            return next;
+        };
+    }
+
+    @Override
+    public void run() {
+        long expected = expectedNanos;
+        long deadline = deadline(expected);
+        try {
+            JobLease lease = null;
+            if (leases != null) {
+                Long token = leases.enter(leaseKey);
+                if (token == null) {
+                    standby.increment();
+                    return;
+                }
+                lease = new JobLease(leaseKey, token);
+            }
+            if (!permits.tryAcquire()) {
+                exitLease(lease);
+                skipped.increment();
+                log.debug("定时任务 {} 上一次还在执行（{} 个），跳过这一次", name, running.get());
+                return;
+            }
+            if (pool == null) {
+                execute(expected, deadline, lease);
+                return;
+            }
+            JobLease dispatched = lease;
+            try {
+                pool.execute(() -> execute(expected, deadline, dispatched));
+            } catch (RejectedExecutionException e) {
+                // 停机时线程池已关闭
+                permits.release();
+                exitLease(lease);
+                skipped.increment();
+            }
+        } finally {
+            if (mode == Mode.FIXED_RATE) {
+                expectedNanos = expected + intervalNanos;
+            } else if (mode == Mode.FIXED_DELAY) {
+                // fixedDelay 的任务总是在调度线程上执行（不允许配 poolSize，见 ScheduledJobMonitor.register），这里就是执行结束的时间
+                expectedNanos = System.nanoTime() + intervalNanos;
+            }
+        }
+    }
+
+    private void execute(long expected, long deadline, JobLease lease) {
+        long start = System.nanoTime();
+        startLag.record(Math.max(0, start - expected));
+        lastStartedAt = System.currentTimeMillis();
+        running.incrementAndGet();
+        JobLease.set(lease);
+        try {
+            task.run();
+        } catch (Throwable e) {
+            // 和 taskScheduler 对周期任务的默认处理一样：记日志，不影响后面的调度
+            failures.increment();
+            lastError = e.toString();
+            log.error("定时任务 {} 执行失败", name, e);
+        } finally {
+            JobLease.clear();
+            long end = System.nanoTime();
+            long elapsed = end - start;
+            duration.record(elapsed);
+            lastDurationNanos = elapsed;
+            runs.increment();
+            if (deadline != NO_DEADLINE && end - deadline > 0) {
+                overruns.increment();
+                log.warn("定时任务 {} 执行了 {} ms，超过了下一次的计划时间", name, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+            running.decrementAndGet();
+            permits.release();
+            exitLease(lease);
+        }
+    }
+
+    private void exitLease(JobLease lease) {
+        if (lease != null) {
+            leases.exit();
+        }
+    }
+
+    /**
+     * 再下一次本该开始的时间；fixedDelay 的下一次从这一次结束开始算，不存在超时
+     */
+    private long deadline(long expected) {
+        if (mode == Mode.FIXED_RATE) {
+            return expected + intervalNanos;
+        }
+        if (mode == Mode.TRIGGER) {
+            Date scheduled = new Date(expectedMillis);
+            Date next = trigger.nextExecutionTime(new SimpleTriggerContext(scheduled, scheduled, scheduled));
+            if (next != null) {
+                return expected + TimeUnit.MILLISECONDS.toNanos(next.getTime() - scheduled.getTime());
+            }
+        }
+        return NO_DEADLINE;
+    }
+
+    private long nanosAt(long epochMillis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(epochMillis - System.currentTimeMillis());
+    }
+}
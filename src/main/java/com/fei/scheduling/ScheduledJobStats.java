@@ -0,0 +1,40 @@
+package com.fei.scheduling;
+
+import com.fei.aop.count_method_call_count.LatencySnapshot;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 一个定时任务的执行统计，见 ScheduledJobMonitor
+ */
+@Getter
+@AllArgsConstructor
+public class ScheduledJobStats {
+    private final String name;
+    // 类名.方法名
+    private final String source;
+    // 集群租约的键（租约表的 job_name），不是集群租约任务时为 null
+    private final String lease;
+    // fixedRate=5000ms、fixedDelay=5000ms、cron=...
+    private final String schedule;
+    // taskScheduler 表示在共享的调度线程上执行，否则是独立线程池的大小
+    private final String executor;
+    private final int maxConcurrent;
+    // 执行完的次数（包括失败的）
+    private final long runs;
+    private final long failures;
+    // 因为同时执行的次数到了上限而跳过的触发次数
+    private final long skipped;
+    // 结束时已经过了下一次计划时间的次数
+    private final long overruns;
+    // 集群租约任务：本节点没有持有租约、交给别的节点执行的触发次数；不是集群租约任务时为 -1
+    private final long standby;
+    private final int running;
+    // 最近一次开始执行的时间戳（毫秒），没执行过为 -1
+    private final long lastStartedAt;
+    private final double lastDurationMillis;
+    private final String lastError;
+    private final LatencySnapshot duration;
+    // 实际开始执行比计划时间晚了多久
+    private final LatencySnapshot startLag;
+}
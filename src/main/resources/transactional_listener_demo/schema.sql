@@ -1,5 +1,21 @@
+-- name 上的唯一索引不只是约束：转账语句按这个索引的顺序给两行加锁，并发的反向转账才不会死锁
+-- 表已经存在时不会重建，老表需要手动执行：ALTER TABLE transactional_listener_demo_account ADD UNIQUE INDEX uk_name (name);
 CREATE TABLE IF NOT EXISTS transactional_listener_demo_account (
   id INT PRIMARY KEY AUTO_INCREMENT,
-  name VARCHAR(50) NOT NULL,
+  name VARCHAR(50) NOT NULL UNIQUE,
   balance DECIMAL(10,2) NOT NULL
-); 
\ No newline at end of file
+); 
+-- 事务 outbox：AccountChangeEvent 和余额变更在同一个事务里写入，由 OutboxRelay 投递后删除
+CREATE TABLE IF NOT EXISTS transactional_listener_demo_outbox (
+  id BIGINT PRIMARY KEY AUTO_INCREMENT,
+  account VARCHAR(50),
+  msg VARCHAR(500) NOT NULL,
+  created_at_millis BIGINT NOT NULL
+);
+-- 定时任务的集群租约：每个任务一行，owner 持有到 expires_at（数据库时间），每换一次持有者 fencing_token 加一，见 JobLeaseManager
+CREATE TABLE IF NOT EXISTS scheduled_job_lease (
+  job_name VARCHAR(200) PRIMARY KEY,
+  owner VARCHAR(200) NOT NULL,
+  fencing_token BIGINT NOT NULL,
+  expires_at DATETIME(3) NOT NULL
+);